@@ -0,0 +1,130 @@
+package com.xmpp.plate.benchmark;
+
+import com.xmpp.plate.config.ChatStateProperties;
+import com.xmpp.plate.dto.ChatStateRequest;
+import com.xmpp.plate.service.ChatStateService;
+import com.xmpp.plate.service.ChatStateStore;
+import com.xmpp.plate.service.VehicleService;
+import com.xmpp.plate.transport.XmppTransport;
+import com.xmpp.plate.util.DeadlineTimerWheel;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the COMPOSING debounce path: every keystroke event pushes the pair's PAUSED deadline back
+ * The service benchmark calls updateChatState against stubbed collaborators. Each call is queued on the
+ * pair's serial queue without waiting, so the score tracks the queuing cost; the timer and coalescer
+ * bookkeeping runs on the drain threads, and repeated COMPOSING states are coalesced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ChatStateBenchmark {
+
+    // Plate pairs typing at the same time
+    private static final int PAIRS = 10000;
+    private static final long DEBOUNCE_MILLIS = 3000;
+
+    private ChatStateStore.Key[] keys;
+    private ChatStateRequest[] composing;
+    private DeadlineTimerWheel<ChatStateStore.Key> wheel;
+    private ChatStateService chatStateService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Without Spring Boot's logging setup logback defaults to DEBUG, which would dominate the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.INFO);
+
+        ChatStateProperties properties = new ChatStateProperties();
+        keys = new ChatStateStore.Key[PAIRS];
+        composing = new ChatStateRequest[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            String plate = String.format("34ABC%04d", i);
+            String peer = String.format("06XYZ%04d", i);
+            keys[i] = new ChatStateStore.Key(plate, peer);
+            composing[i] = ChatStateRequest.builder()
+                    .plateNumber(plate)
+                    .chatWithPlate(peer)
+                    .state("COMPOSING")
+                    .build();
+        }
+
+        ChatStateProperties.Debounce debounce = properties.getDebounce();
+        wheel = new DeadlineTimerWheel<>("benchmark", debounce.getTick(), debounce.getWheelSize(), key -> { });
+
+        chatStateService = new ChatStateService();
+        ReflectionTestUtils.setField(chatStateService, "chatStateStore", Mockito.mock(ChatStateStore.class));
+        ReflectionTestUtils.setField(chatStateService, "vehicleService", Mockito.mock(VehicleService.class));
+        ReflectionTestUtils.setField(chatStateService, "xmppTransport", Mockito.mock(XmppTransport.class));
+        ReflectionTestUtils.setField(chatStateService, "messagingTemplate", Mockito.mock(SimpMessagingTemplate.class));
+        ReflectionTestUtils.setField(chatStateService, "chatStateProperties", properties);
+        ReflectionTestUtils.setField(chatStateService, "environment", new StandardEnvironment());
+        ReflectionTestUtils.setField(chatStateService, "debounceSeconds", (int) TimeUnit.MILLISECONDS.toSeconds(DEBOUNCE_MILLIS));
+        chatStateService.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.stop();
+        chatStateService.cleanup();
+    }
+
+    /**
+     * Rotates each thread through the typing pairs
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            int index = next;
+            next = index + 1 == PAIRS ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public void touchSamePair() {
+        wheel.touch(keys[0], DEBOUNCE_MILLIS);
+    }
+
+    @Benchmark
+    public void touch(Cursor cursor) {
+        wheel.touch(keys[cursor.next()], DEBOUNCE_MILLIS);
+    }
+
+    @Benchmark
+    public void touchThenCancel(Cursor cursor) {
+        ChatStateStore.Key key = keys[cursor.next()];
+        wheel.touch(key, DEBOUNCE_MILLIS);
+        wheel.cancel(key);
+    }
+
+    @Benchmark
+    public void updateChatStateComposing(Cursor cursor) {
+        chatStateService.updateChatState(composing[cursor.next()]);
+    }
+}
@@ -0,0 +1,98 @@
+package com.xmpp.plate.benchmark;
+
+import com.xmpp.plate.config.CacheProperties;
+import com.xmpp.plate.util.EncryptionUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original per-call key derivation and cipher lookup in EncryptionUtil
+ * with the derived-once key, per-thread ciphers and decrypted-credential cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class EncryptionBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key";
+    private static final String PASSWORD = "Xk9#mQ2$vL7!pR4@";
+
+    private EncryptionUtil encryptionUtil;
+    private String encryptedPassword;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        encryptionUtil = new EncryptionUtil();
+        ReflectionTestUtils.setField(encryptionUtil, "secretKey", SECRET);
+        ReflectionTestUtils.setField(encryptionUtil, "cacheProperties", new CacheProperties());
+        encryptionUtil.init();
+        encryptedPassword = encryptionUtil.encrypt(PASSWORD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        encryptionUtil.clearCredentialCache();
+    }
+
+    @Benchmark
+    public String encryptBaseline() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, legacyKeySpec());
+        return Base64.getEncoder().encodeToString(cipher.doFinal(PASSWORD.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionUtil.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public String decryptBaseline() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, legacyKeySpec());
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedPassword)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionUtil.decrypt(encryptedPassword);
+    }
+
+    @Benchmark
+    public String decryptCredential() {
+        return encryptionUtil.decryptCredential(encryptedPassword);
+    }
+
+    // Key derivation as it was done on every call before the key was cached
+    private static SecretKeySpec legacyKeySpec() throws Exception {
+        byte[] key = SECRET.getBytes(StandardCharsets.UTF_8);
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        key = sha.digest(key);
+        key = Arrays.copyOf(key, 16);
+        return new SecretKeySpec(key, "AES");
+    }
+}
@@ -0,0 +1,89 @@
+package com.xmpp.plate.benchmark;
+
+import org.jxmpp.jid.DomainBareJid;
+import org.jxmpp.jid.EntityBareJid;
+import org.jxmpp.jid.impl.JidCreate;
+import org.jxmpp.jid.parts.Localpart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building recipient JIDs the way the transports do, from "plate@domain"
+ * JidCreate keeps a small cache of parsed JIDs, so a single hot plate and a fleet-sized
+ * rotation of plates are measured separately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JidBenchmark {
+
+    private static final String DOMAIN = "localhost";
+    private static final int FLEET_SIZE = 10000;
+
+    private String[] plates;
+    private String[] jids;
+    private DomainBareJid domain;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        plates = new String[FLEET_SIZE];
+        jids = new String[FLEET_SIZE];
+        for (int i = 0; i < FLEET_SIZE; i++) {
+            plates[i] = String.format("%02dABC%04d", 1 + i % 81, i);
+            jids[i] = plates[i] + "@" + DOMAIN;
+        }
+        domain = JidCreate.domainBareFrom(DOMAIN);
+    }
+
+    /**
+     * Rotates through the fleet so each thread keeps missing the JID cache
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            int index = next;
+            next = index + 1 == FLEET_SIZE ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public EntityBareJid samePlate() throws Exception {
+        return JidCreate.entityBareFrom(jids[0]);
+    }
+
+    @Benchmark
+    public EntityBareJid fleet(Cursor cursor) throws Exception {
+        return JidCreate.entityBareFrom(jids[cursor.next()]);
+    }
+
+    @Benchmark
+    public EntityBareJid fleetConcatenated(Cursor cursor) throws Exception {
+        // What the transports do today: concatenate, then parse the whole JID
+        return JidCreate.entityBareFrom(plates[cursor.next()] + "@" + DOMAIN);
+    }
+
+    @Benchmark
+    public EntityBareJid fleetFromParts(Cursor cursor) throws Exception {
+        // Only the localpart is prepared; the domain is parsed once
+        return JidCreate.entityBareFrom(Localpart.from(plates[cursor.next()]), domain);
+    }
+}
@@ -0,0 +1,96 @@
+package com.xmpp.plate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.xmpp.plate.dto.MessageResponse;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.service.MessageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a stored message into the JSON sent to REST and STOMP clients
+ * The ObjectMapper is configured the way Spring Boot configures the application's mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSerializationBenchmark {
+
+    // Default history page size
+    private static final int PAGE_SIZE = 50;
+
+    private MessageService messageService;
+    private ObjectMapper objectMapper;
+    private Message message;
+    private MessageResponse response;
+    private List<MessageResponse> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messageService = new MessageService();
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        message = message(1);
+        response = messageService.mapToResponse(message);
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add(messageService.mapToResponse(message(i + 1)));
+        }
+    }
+
+    @Benchmark
+    public MessageResponse mapToResponse() {
+        return messageService.mapToResponse(message);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(messageService.mapToResponse(message));
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    private static Message message(long id) {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 15, 10, 30).plusSeconds(id);
+        return Message.builder()
+                .id(id)
+                .fromPlateNumber("34ABC123")
+                .toPlateNumber("06XYZ789")
+                .messageContent("Hello! I need to pass on the left.")
+                .messageType("TEXT")
+                .timestamp(timestamp)
+                .isDelivered(true)
+                .isRead(false)
+                .deliveredAt(timestamp)
+                .xmppMessageId("stanza-" + id)
+                .build();
+    }
+}
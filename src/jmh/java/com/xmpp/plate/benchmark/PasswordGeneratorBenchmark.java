@@ -0,0 +1,31 @@
+package com.xmpp.plate.benchmark;
+
+import com.xmpp.plate.util.PasswordGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures XMPP password generation during vehicle registration
+ * Runs on several threads because all callers share one SecureRandom.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PasswordGeneratorBenchmark {
+
+    @Benchmark
+    public String generatePassword() {
+        return PasswordGenerator.generatePassword();
+    }
+}
@@ -0,0 +1,88 @@
+package com.xmpp.plate.loadtest;
+
+import com.xmpp.plate.dto.ChatStateRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * STOMP connections that send chat states for the simulated plates
+ * Plates are spread over the connections; each connection also subscribes to the
+ * chat-state topic of its plates and counts the broadcasts it receives.
+ */
+@Slf4j
+public class ChatStateClients implements AutoCloseable {
+
+    private final WebSocketStompClient stompClient;
+    private final List<StompSession> sessions = new ArrayList<>();
+    private final LongAdder received = new LongAdder();
+
+    public ChatStateClients(String url, int connections, List<String> plates) throws Exception {
+        stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        for (int i = 0; i < connections; i++) {
+            StompSession session = stompClient.connectAsync(url, new StompSessionHandlerAdapter() { })
+                    .get(30, TimeUnit.SECONDS);
+            sessions.add(session);
+        }
+        for (int i = 0; i < plates.size(); i++) {
+            sessions.get(i % sessions.size()).subscribe("/topic/chat-state/" + plates.get(i), new CountingHandler());
+        }
+        log.info("Opened {} STOMP connections for {} plates", sessions.size(), plates.size());
+    }
+
+    /**
+     * Sends a chat state on the connection that owns the plate
+     */
+    public void send(int plateIndex, ChatStateRequest request) {
+        StompSession session = sessions.get(plateIndex % sessions.size());
+        // A WebSocket session takes one frame at a time
+        synchronized (session) {
+            session.send("/app/chat-state", request);
+        }
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    @Override
+    public void close() {
+        sessions.forEach(session -> {
+            try {
+                session.disconnect();
+            } catch (RuntimeException e) {
+                log.debug("Error closing STOMP session: {}", e.getMessage());
+            }
+        });
+        stompClient.stop();
+    }
+
+    private class CountingHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return ChatStateRequest.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            received.increment();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.xmpp.plate.loadtest;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load test settings, read from loadtest.* system properties
+ * Any app.* system property is passed to the application without the prefix,
+ * e.g. -Dapp.xmpp.inbound.workers=8.
+ */
+@Value
+@Builder
+public class LoadTestOptions {
+
+    // Number of simulated vehicles registered before the run
+    int plates;
+    // Worker threads issuing requests
+    int concurrency;
+    // Target operations per second across all workers; 0 runs closed-loop as fast as responses allow
+    int rate;
+    int warmupSeconds;
+    int durationSeconds;
+    // Relative weight of each operation
+    Map<Operation, Integer> mix;
+    // STOMP connections shared by the simulated plates
+    int stompConnections;
+    // client: one XMPP login per plate; component: the embedded XEP-0114 gateway
+    String transport;
+    int historyPageSize;
+    String resultFile;
+    Map<String, String> applicationProperties;
+
+    public static LoadTestOptions fromSystemProperties() {
+        Map<String, String> applicationProperties = new LinkedHashMap<>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("app."))
+                .forEach(name -> applicationProperties.put(name.substring(4), System.getProperty(name)));
+
+        return LoadTestOptions.builder()
+                .plates(Integer.getInteger("loadtest.plates", 2000))
+                .concurrency(Integer.getInteger("loadtest.concurrency", 64))
+                .rate(Integer.getInteger("loadtest.rate", 0))
+                .warmupSeconds(Integer.getInteger("loadtest.warmup", 15))
+                .durationSeconds(Integer.getInteger("loadtest.duration", 60))
+                .mix(parseMix(System.getProperty("loadtest.mix", "send=60,history=30,chat-state=10")))
+                .stompConnections(Integer.getInteger("loadtest.stomp-connections", 32))
+                .transport(System.getProperty("loadtest.transport", "client"))
+                .historyPageSize(Integer.getInteger("loadtest.history-page-size", 20))
+                .resultFile(System.getProperty("loadtest.result", "target/loadtest-result.json"))
+                .applicationProperties(applicationProperties)
+                .build();
+    }
+
+    /**
+     * Parses "send=60,history=30,chat-state=10"; operations left out get no traffic
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid loadtest.mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromName(parts[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix has no operation with a positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,349 @@
+package com.xmpp.plate.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.xmpp.plate.XmppPlateApplication;
+import com.xmpp.plate.config.XmppConnectionManager;
+import com.xmpp.plate.dto.ChatStateRequest;
+import com.xmpp.plate.service.MessageBatchWriter;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end load test of the application without Openfire or an external PostgreSQL
+ * Starts an embedded PostgreSQL and an in-process XMPP server, then the application against
+ * both, registers the simulated plates, then drives a weighted mix of message sends, history
+ * reads and STOMP chat states. Reports throughput and latency percentiles per operation
+ * and writes them as JSON.
+ *
+ * With loadtest.rate set, workers issue requests on a fixed schedule and latency is
+ * measured from the scheduled start, so a stalled server is not hidden by the workers
+ * waiting on it (coordinated omission).
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    private static final String XMPP_DOMAIN = "localhost";
+    private static final String XMPP_ADMIN_USERNAME = "admin";
+    private static final String XMPP_ADMIN_PASSWORD = "admin";
+
+    private static final String[] CHAT_STATES = {"COMPOSING", "COMPOSING", "COMPOSING", "COMPOSING", "PAUSED", "ACTIVE"};
+
+    private final LoadTestOptions options;
+    private final ConfigurableApplicationContext application;
+    private final LocalXmppServer xmppServer;
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> plates = new ArrayList<>();
+    private final Map<Operation, OperationStats> stats = new LinkedHashMap<>();
+    private final Operation[] weightedOperations;
+
+    private ChatStateClients chatStateClients;
+
+    // Cleared to stop the workers
+    private volatile boolean running = true;
+
+    public LoadTestRunner(LoadTestOptions options, ConfigurableApplicationContext application,
+                          LocalXmppServer xmppServer) {
+        this.options = options;
+        this.application = application;
+        this.xmppServer = xmppServer;
+        int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+        this.baseUrl = "http://localhost:" + port;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        List<Operation> weighted = new ArrayList<>();
+        options.getMix().forEach((operation, weight) -> {
+            stats.put(operation, new OperationStats(operation));
+            for (int i = 0; i < weight; i++) {
+                weighted.add(operation);
+            }
+        });
+        this.weightedOperations = weighted.toArray(new Operation[0]);
+
+        for (int i = 0; i < options.getPlates(); i++) {
+            // Matches the Turkish plate format: province, letters, digits
+            plates.add(String.format("%02dLT%04d", 1 + (i / 10000) % 81, i % 10000));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+        log.info("Load test options: {}", options);
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            LocalXmppServer xmppServer = new LocalXmppServer(XMPP_DOMAIN, XMPP_ADMIN_USERNAME, XMPP_ADMIN_PASSWORD);
+            xmppServer.start();
+            try {
+                ConfigurableApplicationContext application = startApplication(options, postgres, xmppServer);
+                try {
+                    new LoadTestRunner(options, application, xmppServer).run();
+                } finally {
+                    application.close();
+                }
+            } finally {
+                xmppServer.stop();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options, EmbeddedPostgres postgres,
+                                                                   LocalXmppServer xmppServer) throws IOException {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url",
+                postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true");
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("server.port", "0");
+        properties.put("xmpp.host", "127.0.0.1");
+        properties.put("xmpp.port", String.valueOf(xmppServer.getPort()));
+        properties.put("xmpp.domain", XMPP_DOMAIN);
+        properties.put("xmpp.service-name", XMPP_DOMAIN);
+        properties.put("xmpp.admin.username", XMPP_ADMIN_USERNAME);
+        properties.put("xmpp.admin.password", XMPP_ADMIN_PASSWORD);
+        properties.put("xmpp.connection.pool.size", String.valueOf(options.getPlates()));
+        properties.put("xmpp.connection.reconnect.enabled", "false");
+        if ("component".equals(options.getTransport())) {
+            properties.put("xmpp.transport.mode", "component");
+            properties.put("xmpp.transport.component.embedded-server", "true");
+            properties.put("xmpp.transport.component.port", String.valueOf(freePort()));
+            properties.put("xmpp.transport.component.secret", "loadtest");
+        }
+        // Per-request INFO logging would dominate the measurement
+        properties.put("logging.level.com.xmpp.plate", "WARN");
+        properties.put("logging.level.org.jivesoftware", "WARN");
+        properties.putAll(options.getApplicationProperties());
+
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(XmppPlateApplication.class).run(args);
+    }
+
+    public void run() throws Exception {
+        registerPlates();
+        if (stats.containsKey(Operation.CHAT_STATE)) {
+            chatStateClients = new ChatStateClients(baseUrl + "/ws/chat", options.getStompConnections(), plates);
+        }
+
+        try {
+            ExecutorService workers = Executors.newFixedThreadPool(options.getConcurrency());
+            long startNanos = System.nanoTime();
+            CountDownLatch stopped = new CountDownLatch(options.getConcurrency());
+            for (int i = 0; i < options.getConcurrency(); i++) {
+                workers.submit(() -> {
+                    try {
+                        work(startNanos);
+                    } finally {
+                        stopped.countDown();
+                    }
+                });
+            }
+
+            log.info("Warming up for {}s", options.getWarmupSeconds());
+            TimeUnit.SECONDS.sleep(options.getWarmupSeconds());
+            stats.values().forEach(OperationStats::reset);
+            long chatStatesBefore = chatStateClients == null ? 0 : chatStateClients.getReceivedCount();
+
+            log.info("Measuring for {}s", options.getDurationSeconds());
+            long measureStart = System.nanoTime();
+            TimeUnit.SECONDS.sleep(options.getDurationSeconds());
+            running = false;
+            double elapsedSeconds = (System.nanoTime() - measureStart) / 1e9;
+            stopped.await(60, TimeUnit.SECONDS);
+            workers.shutdownNow();
+
+            long chatStatesReceived = chatStateClients == null ? 0 : chatStateClients.getReceivedCount() - chatStatesBefore;
+            report(elapsedSeconds, chatStatesReceived);
+        } finally {
+            if (chatStateClients != null) {
+                chatStateClients.close();
+            }
+        }
+    }
+
+    /**
+     * Registers every plate through the REST API; each registration creates an XMPP account
+     */
+    private void registerPlates() throws InterruptedException {
+        log.info("Registering {} plates", plates.size());
+        long start = System.nanoTime();
+        Semaphore inFlight = new Semaphore(32);
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(plates.size());
+        for (int i = 0; i < plates.size(); i++) {
+            String body = "{\"userId\":\"loadtest-" + i + "\",\"plateNumber\":\"" + plates.get(i) + "\"}";
+            inFlight.acquire();
+            httpClient.sendAsync(post("/api/vehicles", body), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || (response.statusCode() != 201 && response.statusCode() != 409)) {
+                            failed.incrementAndGet();
+                        }
+                        inFlight.release();
+                        done.countDown();
+                    });
+        }
+        done.await();
+        if (failed.get() > 0) {
+            throw new IllegalStateException(failed.get() + " of " + plates.size() + " plate registrations failed");
+        }
+        log.info("Registered {} plates in {} ms", plates.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void work(long startNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Each worker gets an equal share of the target rate
+        long intervalNanos = options.getRate() > 0
+                ? TimeUnit.SECONDS.toNanos(options.getConcurrency()) / options.getRate()
+                : 0;
+        long next = startNanos + (intervalNanos == 0 ? 0 : random.nextLong(intervalNanos));
+
+        while (running) {
+            long scheduled;
+            if (intervalNanos > 0) {
+                scheduled = next;
+                next += intervalNanos;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            } else {
+                scheduled = System.nanoTime();
+            }
+
+            Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+            OperationStats operationStats = stats.get(operation);
+            int from = random.nextInt(plates.size());
+            int to = (from + 1 + random.nextInt(Math.max(1, plates.size() - 1))) % plates.size();
+            try {
+                int status = execute(operation, from, to);
+                if (status >= 400) {
+                    operationStats.recordError("HTTP " + status);
+                } else {
+                    operationStats.recordSuccess(System.nanoTime() - scheduled);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                operationStats.recordError(e.getClass().getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Runs one operation and returns its HTTP status; chat states have no response and report 200
+     */
+    private int execute(Operation operation, int from, int to) throws Exception {
+        return switch (operation) {
+            case SEND -> {
+                String body = "{\"fromPlateNumber\":\"" + plates.get(from) + "\",\"toPlateNumber\":\"" + plates.get(to)
+                        + "\",\"messageContent\":\"Load test message " + System.nanoTime() + "\",\"messageType\":\"TEXT\"}";
+                yield httpClient.send(post("/api/messages/send", body), HttpResponse.BodyHandlers.discarding()).statusCode();
+            }
+            case HISTORY -> {
+                HttpRequest request = HttpRequest.newBuilder(
+                                URI.create(baseUrl + "/api/messages/" + plates.get(from) + "?limit=" + options.getHistoryPageSize()))
+                        .timeout(Duration.ofSeconds(30))
+                        .GET()
+                        .build();
+                yield httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            }
+            case CHAT_STATE -> {
+                chatStateClients.send(from, ChatStateRequest.builder()
+                        .plateNumber(plates.get(from))
+                        .chatWithPlate(plates.get(to))
+                        .state(CHAT_STATES[ThreadLocalRandom.current().nextInt(CHAT_STATES.length)])
+                        .build());
+                yield 200;
+            }
+        };
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private void report(double elapsedSeconds, long chatStatesReceived) throws IOException {
+        List<Map<String, Object>> operations = new ArrayList<>();
+        stats.values().forEach(operationStats -> operations.add(operationStats.summary(elapsedSeconds)));
+
+        Map<String, Object> server = new LinkedHashMap<>();
+        server.put("javaVersion", Runtime.version().toString());
+        server.put("virtualThreads", Threading.VIRTUAL.isActive(application.getEnvironment()));
+        server.put("xmppPool", application.getBean(XmppConnectionManager.class).getPoolStats());
+        server.put("batchWriter", application.getBean(MessageBatchWriter.class).getStats());
+        server.put("xmppLogins", xmppServer.getLoginCount());
+        server.put("xmppRoutedMessages", xmppServer.getRoutedMessageCount());
+        server.put("xmppUndeliveredMessages", xmppServer.getUndeliveredMessageCount());
+        server.put("chatStateBroadcastsReceived", chatStatesReceived);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("options", options);
+        result.put("elapsedSeconds", elapsedSeconds);
+        result.put("operations", operations);
+        result.put("server", server);
+
+        StringBuilder table = new StringBuilder(String.format("%n%-12s %10s %8s %10s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map<String, Object> summary : operations) {
+            table.append(String.format("%-12s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    summary.get("operation"), summary.get("count"), summary.get("errors"), summary.get("throughput"),
+                    summary.get("p50"), summary.get("p99"), summary.get("p999"), summary.get("max")));
+        }
+        log.info("Load test results over {}s with {} plates and {} workers:{}",
+                String.format("%.1f", elapsedSeconds), plates.size(), options.getConcurrency(), table);
+        log.info("Server: {}", server);
+
+        File resultFile = new File(options.getResultFile());
+        if (resultFile.getParentFile() != null) {
+            resultFile.getParentFile().mkdirs();
+        }
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, result);
+        log.info("Results written to {}", resultFile.getAbsolutePath());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
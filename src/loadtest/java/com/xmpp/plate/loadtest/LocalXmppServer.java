@@ -0,0 +1,513 @@
+package com.xmpp.plate.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jivesoftware.smack.xml.SmackXmlParser;
+import org.jivesoftware.smack.xml.XmlPullParser;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process XMPP server used as a stand-in for Openfire in client mode
+ * Speaks just enough RFC 6120 for Smack: SCRAM-SHA-1 login without TLS, resource binding,
+ * in-band registration, an empty roster and routing of message stanzas between connected
+ * plates. Accounts live in memory. The load test starts it on a free loopback port before the
+ * application and points xmpp.port at it.
+ */
+@Slf4j
+public class LocalXmppServer {
+
+    static final String CLIENT_NAMESPACE = "jabber:client";
+    static final String SASL_NAMESPACE = "urn:ietf:params:xml:ns:xmpp-sasl";
+    static final String BIND_NAMESPACE = "urn:ietf:params:xml:ns:xmpp-bind";
+    static final String REGISTER_NAMESPACE = "jabber:iq:register";
+    static final String STANZA_ERROR_NAMESPACE = "urn:ietf:params:xml:ns:xmpp-stanzas";
+
+    private static final int SCRAM_ITERATIONS = 4096;
+
+    private final String domain;
+
+    private final String adminUsername;
+
+    private final String adminPassword;
+
+    private ServerSocket serverSocket;
+
+    private final ExecutorService sessions = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "local-xmpp-session");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SecureRandom random = new SecureRandom();
+
+    // username -> account created through in-band registration
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+    // username -> most recently bound session of that user
+    private final Map<String, Session> boundSessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong logins = new AtomicLong();
+    private final AtomicLong routedMessages = new AtomicLong();
+    private final AtomicLong undeliveredMessages = new AtomicLong();
+
+    public LocalXmppServer(String domain, String adminUsername, String adminPassword) {
+        this.domain = domain;
+        this.adminUsername = adminUsername;
+        this.adminPassword = adminPassword;
+    }
+
+    /**
+     * Creates the admin account and starts listening on a free loopback port
+     */
+    public void start() throws IOException {
+        accounts.put(adminUsername, new Account(adminPassword, salt()));
+
+        serverSocket = new ServerSocket(0, 512, InetAddress.getLoopbackAddress());
+        sessions.submit(this::acceptLoop);
+        log.info("Local XMPP server for domain {} listening on {}:{}",
+                domain, serverSocket.getInetAddress().getHostAddress(), getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Gets the number of sessions that currently have a bound resource
+     */
+    public int getBoundSessionCount() {
+        return boundSessions.size();
+    }
+
+    /**
+     * Gets the number of successful logins since startup
+     */
+    public long getLoginCount() {
+        return logins.get();
+    }
+
+    /**
+     * Gets the number of messages handed to a connected recipient since startup
+     */
+    public long getRoutedMessageCount() {
+        return routedMessages.get();
+    }
+
+    /**
+     * Gets the number of messages dropped because the recipient had no session
+     */
+    public long getUndeliveredMessageCount() {
+        return undeliveredMessages.get();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.submit(() -> new Session(socket).run());
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.error("Local XMPP server accept failed", e);
+                }
+            }
+        }
+    }
+
+    private byte[] salt() {
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.debug("Error closing local XMPP server: {}", e.getMessage());
+        }
+        sessions.shutdownNow();
+        log.info("Local XMPP server stopped after {} logins, {} routed and {} undelivered messages",
+                logins.get(), routedMessages.get(), undeliveredMessages.get());
+    }
+
+    /**
+     * One client connection; runs on its own thread and is written to by other sessions when routing
+     */
+    private final class Session {
+
+        private final Socket socket;
+        private Writer writer;
+
+        private String username;
+        private String fullJid;
+
+        // SCRAM exchange in progress
+        private Account pendingAccount;
+        private String pendingUsername;
+        private String clientFirstBare;
+        private String serverFirst;
+
+        private Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        private void run() {
+            try (socket) {
+                writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                XmlPullParser parser = SmackXmlParser.newXmlParser(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+                // Stanzas are the children of the innermost stream element; a new stream header follows SASL success
+                int streamDepth = -1;
+                while (true) {
+                    XmlPullParser.Event event = parser.next();
+                    if (event == XmlPullParser.Event.END_DOCUMENT) {
+                        break;
+                    }
+                    if (event == XmlPullParser.Event.START_ELEMENT && "stream".equals(parser.getName())) {
+                        streamDepth = parser.getDepth();
+                        openStream();
+                    } else if (event == XmlPullParser.Event.START_ELEMENT && parser.getDepth() == streamDepth + 1) {
+                        handle(readElement(parser));
+                    } else if (event == XmlPullParser.Event.END_ELEMENT && "stream".equals(parser.getName())) {
+                        send("</stream:stream>");
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                if (!serverSocket.isClosed()) {
+                    log.debug("Local XMPP session {} ended: {}", fullJid, e.getMessage());
+                }
+            } finally {
+                if (username != null) {
+                    boundSessions.remove(username, this);
+                }
+            }
+        }
+
+        private void openStream() throws IOException {
+            StringBuilder features = new StringBuilder("<stream:features>");
+            if (username == null) {
+                features.append("<mechanisms xmlns='").append(SASL_NAMESPACE)
+                        .append("'><mechanism>SCRAM-SHA-1</mechanism></mechanisms>")
+                        .append("<register xmlns='http://jabber.org/features/iq-register'/>");
+            } else {
+                features.append("<bind xmlns='").append(BIND_NAMESPACE).append("'/>");
+            }
+            features.append("</stream:features>");
+            send("<?xml version='1.0' encoding='UTF-8'?><stream:stream xmlns='" + CLIENT_NAMESPACE
+                    + "' xmlns:stream='http://etherx.jabber.org/streams' from='" + domain
+                    + "' id='" + UUID.randomUUID() + "' version='1.0' xml:lang='en'>" + features);
+        }
+
+        private void handle(Element element) throws IOException {
+            switch (element.name) {
+                case "auth" -> handleAuth(element);
+                case "response" -> handleScramFinal(element);
+                case "iq" -> handleIq(element);
+                case "message" -> route(element);
+                case "presence" -> { }
+                default -> log.debug("Local XMPP server ignored <{}>", element.name);
+            }
+        }
+
+        /**
+         * Answers the SCRAM client-first message with the account's salt and a server nonce
+         */
+        private void handleAuth(Element auth) throws IOException {
+            String clientFirst = decode(auth.text.toString());
+            // gs2 header is "n,," or "n,a=<authzid>,"; the bare message follows the second comma
+            int headerEnd = clientFirst.indexOf(',', clientFirst.indexOf(',') + 1);
+            if (!"SCRAM-SHA-1".equals(auth.attributes.get("mechanism")) || headerEnd < 0) {
+                saslFailure("invalid-mechanism");
+                return;
+            }
+            clientFirstBare = clientFirst.substring(headerEnd + 1);
+            Map<String, String> attributes = scramAttributes(clientFirstBare);
+            pendingUsername = attributes.get("n");
+            pendingAccount = pendingUsername == null ? null : accounts.get(pendingUsername);
+            if (pendingAccount == null) {
+                saslFailure("not-authorized");
+                return;
+            }
+            serverFirst = "r=" + attributes.get("r") + UUID.randomUUID().toString().replace("-", "")
+                    + ",s=" + Base64.getEncoder().encodeToString(pendingAccount.salt)
+                    + ",i=" + SCRAM_ITERATIONS;
+            send("<challenge xmlns='" + SASL_NAMESPACE + "'>" + encode(serverFirst) + "</challenge>");
+        }
+
+        /**
+         * Verifies the client proof and sends the server signature
+         */
+        private void handleScramFinal(Element response) throws IOException {
+            if (pendingAccount == null) {
+                saslFailure("not-authorized");
+                return;
+            }
+            String clientFinal = decode(response.text.toString());
+            int proofStart = clientFinal.lastIndexOf(",p=");
+            if (proofStart < 0) {
+                saslFailure("malformed-request");
+                return;
+            }
+            String authMessage = clientFirstBare + "," + serverFirst + "," + clientFinal.substring(0, proofStart);
+            byte[] proof = Base64.getDecoder().decode(clientFinal.substring(proofStart + 3));
+            byte[] clientSignature = hmac(pendingAccount.storedKey, authMessage);
+            byte[] clientKey = new byte[clientSignature.length];
+            for (int i = 0; i < clientKey.length && i < proof.length; i++) {
+                clientKey[i] = (byte) (proof[i] ^ clientSignature[i]);
+            }
+            if (!MessageDigest.isEqual(sha1(clientKey), pendingAccount.storedKey)) {
+                saslFailure("not-authorized");
+                return;
+            }
+            String serverSignature = Base64.getEncoder().encodeToString(hmac(pendingAccount.serverKey, authMessage));
+            username = pendingUsername;
+            pendingAccount = null;
+            logins.incrementAndGet();
+            send("<success xmlns='" + SASL_NAMESPACE + "'>" + encode("v=" + serverSignature) + "</success>");
+        }
+
+        private void saslFailure(String condition) throws IOException {
+            pendingAccount = null;
+            send("<failure xmlns='" + SASL_NAMESPACE + "'><" + condition + "/></failure>");
+        }
+
+        private void handleIq(Element iq) throws IOException {
+            String type = iq.attributes.get("type");
+            if (!"get".equals(type) && !"set".equals(type)) {
+                return;
+            }
+            Element query = iq.children.isEmpty() ? null : iq.children.get(0);
+            String namespace = query == null ? "" : query.namespace;
+            if (BIND_NAMESPACE.equals(namespace) && username != null) {
+                Element resource = query.child("resource");
+                fullJid = username + "@" + domain + "/"
+                        + (resource == null || resource.text.isEmpty() ? UUID.randomUUID() : resource.text);
+                Session previous = boundSessions.put(username, this);
+                if (previous != null && previous != this) {
+                    log.debug("Local XMPP server: {} bound a second session", username);
+                }
+                iqResult(iq, "<bind xmlns='" + BIND_NAMESPACE + "'><jid>" + escape(fullJid) + "</jid></bind>");
+            } else if (REGISTER_NAMESPACE.equals(namespace)) {
+                handleRegister(iq, query, type);
+            } else if ("jabber:iq:roster".equals(namespace) && "get".equals(type)) {
+                iqResult(iq, "<query xmlns='jabber:iq:roster'/>");
+            } else if ("http://jabber.org/protocol/disco#info".equals(namespace) && "get".equals(type)) {
+                iqResult(iq, "<query xmlns='http://jabber.org/protocol/disco#info'>"
+                        + "<identity category='server' type='im'/></query>");
+            } else if ("urn:xmpp:ping".equals(namespace) || "urn:ietf:params:xml:ns:xmpp-session".equals(namespace)) {
+                iqResult(iq, "");
+            } else {
+                iqError(iq, "cancel", "service-unavailable");
+            }
+        }
+
+        private void handleRegister(Element iq, Element query, String type) throws IOException {
+            if ("get".equals(type)) {
+                iqResult(iq, "<query xmlns='" + REGISTER_NAMESPACE + "'><instructions>Choose a username and password"
+                        + "</instructions><username/><password/></query>");
+                return;
+            }
+            if (query.child("remove") != null && username != null) {
+                accounts.remove(username);
+                iqResult(iq, "");
+                return;
+            }
+            Element user = query.child("username");
+            Element password = query.child("password");
+            if (user == null || password == null || user.text.isEmpty()) {
+                iqError(iq, "modify", "not-acceptable");
+            } else if (accounts.putIfAbsent(user.text.toString(), new Account(password.text.toString(), salt())) != null) {
+                iqError(iq, "cancel", "conflict");
+            } else {
+                iqResult(iq, "");
+            }
+        }
+
+        /**
+         * Delivers a message to the recipient's bound session, stamped with the sender's full JID
+         */
+        private void route(Element message) throws IOException {
+            String to = message.attributes.get("to");
+            if (to == null || fullJid == null) {
+                return;
+            }
+            int at = to.indexOf('@');
+            Session recipient = at < 0 ? null : boundSessions.get(to.substring(0, at));
+            if (recipient == null) {
+                undeliveredMessages.incrementAndGet();
+                return;
+            }
+            message.attributes.put("from", fullJid);
+            try {
+                recipient.send(message.toXml(CLIENT_NAMESPACE));
+                routedMessages.incrementAndGet();
+            } catch (IOException e) {
+                undeliveredMessages.incrementAndGet();
+                log.debug("Local XMPP server could not deliver to {}: {}", to, e.getMessage());
+            }
+        }
+
+        private void iqResult(Element iq, String payload) throws IOException {
+            send("<iq type='result' id='" + escape(iq.attributes.getOrDefault("id", "")) + "' from='"
+                    + escape(iq.attributes.getOrDefault("to", domain)) + "'>" + payload + "</iq>");
+        }
+
+        private void iqError(Element iq, String errorType, String condition) throws IOException {
+            send("<iq type='error' id='" + escape(iq.attributes.getOrDefault("id", "")) + "' from='"
+                    + escape(iq.attributes.getOrDefault("to", domain)) + "'><error type='" + errorType + "'><"
+                    + condition + " xmlns='" + STANZA_ERROR_NAMESPACE + "'/></error></iq>");
+        }
+
+        private synchronized void send(String xml) throws IOException {
+            writer.write(xml);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Account credentials in the form SCRAM needs; derived once at registration
+     */
+    private static final class Account {
+
+        private final byte[] salt;
+        private final byte[] storedKey;
+        private final byte[] serverKey;
+
+        private Account(String password, byte[] salt) {
+            try {
+                SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+                byte[] saltedPassword = factory.generateSecret(
+                        new PBEKeySpec(password.toCharArray(), salt, SCRAM_ITERATIONS, 160)).getEncoded();
+                this.salt = salt;
+                this.storedKey = sha1(hmac(saltedPassword, "Client Key"));
+                this.serverKey = hmac(saltedPassword, "Server Key");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SCRAM key derivation unavailable", e);
+            }
+        }
+    }
+
+    /**
+     * Parsed top-level element; enough structure to answer IQs and re-serialize messages
+     */
+    private static final class Element {
+
+        private final String name;
+        private final String namespace;
+        private final Map<String, String> attributes = new HashMap<>();
+        private final StringBuilder text = new StringBuilder();
+        private final List<Element> children = new ArrayList<>();
+
+        private Element(String name, String namespace) {
+            this.name = name;
+            this.namespace = namespace == null ? "" : namespace;
+        }
+
+        private Element child(String childName) {
+            return children.stream().filter(child -> child.name.equals(childName)).findFirst().orElse(null);
+        }
+
+        private String toXml(String parentNamespace) {
+            StringBuilder xml = new StringBuilder("<").append(name);
+            if (!namespace.equals(parentNamespace)) {
+                xml.append(" xmlns='").append(escape(namespace)).append('\'');
+            }
+            attributes.forEach((key, value) -> xml.append(' ').append(key).append("='").append(escape(value)).append('\''));
+            if (text.length() == 0 && children.isEmpty()) {
+                return xml.append("/>").toString();
+            }
+            xml.append('>').append(escape(text.toString()));
+            children.forEach(child -> xml.append(child.toXml(namespace)));
+            return xml.append("</").append(name).append('>').toString();
+        }
+    }
+
+    private static Element readElement(XmlPullParser parser) throws Exception {
+        Element element = new Element(parser.getName(), parser.getNamespace());
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            String prefix = parser.getAttributePrefix(i);
+            if (prefix == null || prefix.isEmpty()) {
+                element.attributes.put(parser.getAttributeName(i), parser.getAttributeValue(i));
+            }
+        }
+        while (true) {
+            switch (parser.next()) {
+                case START_ELEMENT -> element.children.add(readElement(parser));
+                case TEXT_CHARACTERS -> element.text.append(parser.getText());
+                case END_ELEMENT -> {
+                    return element;
+                }
+                case END_DOCUMENT -> throw new EOFException("Stream ended inside <" + element.name + ">");
+                default -> { }
+            }
+        }
+    }
+
+    private static Map<String, String> scramAttributes(String message) {
+        Map<String, String> attributes = new HashMap<>();
+        for (String part : message.split(",")) {
+            if (part.length() > 2 && part.charAt(1) == '=') {
+                attributes.put(part.substring(0, 1), part.substring(2));
+            }
+        }
+        return attributes;
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(key, "HmacSHA1"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA1 unavailable", e);
+        }
+    }
+
+    private static byte[] sha1(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-1 unavailable", e);
+        }
+    }
+
+    private static String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String value) {
+        return new String(Base64.getDecoder().decode(value.trim()), StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("'", "&apos;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,33 @@
+package com.xmpp.plate.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Operations a simulated plate performs
+ */
+public enum Operation {
+
+    // POST /api/messages/send
+    SEND("send"),
+    // GET /api/messages/{plate}
+    HISTORY("history"),
+    // STOMP SEND to /app/chat-state
+    CHAT_STATE("chat-state");
+
+    private final String name;
+
+    Operation(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static Operation fromName(String name) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown load test operation: " + name));
+    }
+}
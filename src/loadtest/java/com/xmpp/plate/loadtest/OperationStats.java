@@ -0,0 +1,73 @@
+package com.xmpp.plate.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error counts for one operation, in microseconds
+ */
+public class OperationStats {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Operation operation;
+    private final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    public OperationStats(Operation operation) {
+        this.operation = operation;
+    }
+
+    public void recordSuccess(long latencyNanos) {
+        latencies.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+    }
+
+    /**
+     * Counts a failed call; the reason is an HTTP status or an exception name
+     */
+    public void recordError(String reason) {
+        errors.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+    public void reset() {
+        latencies.reset();
+        errors.clear();
+    }
+
+    public long getErrorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Summarizes the run; latencies in milliseconds
+     */
+    public Map<String, Object> summary(double elapsedSeconds) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("operation", operation.getName());
+        summary.put("count", latencies.getTotalCount());
+        summary.put("errors", getErrorCount());
+        summary.put("throughput", latencies.getTotalCount() / elapsedSeconds);
+        summary.put("p50", millis(latencies.getValueAtPercentile(50)));
+        summary.put("p99", millis(latencies.getValueAtPercentile(99)));
+        summary.put("p999", millis(latencies.getValueAtPercentile(99.9)));
+        summary.put("max", millis(latencies.getMaxValue()));
+        Map<String, Long> errorReasons = new LinkedHashMap<>();
+        errors.forEach((reason, count) -> errorReasons.put(reason, count.sum()));
+        summary.put("errorReasons", errorReasons);
+        return summary;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
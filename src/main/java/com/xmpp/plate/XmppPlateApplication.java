@@ -3,12 +3,14 @@ package com.xmpp.plate;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for XMPP Vehicle Messaging Platform
  */
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 public class XmppPlateApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,34 @@
+package com.xmpp.plate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for in-process caches
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache")
+@Data
+public class CacheProperties {
+
+    private Vehicle vehicle = new Vehicle();
+    private Credentials credentials = new Credentials();
+
+    @Data
+    public static class Vehicle {
+        private boolean enabled = true;
+        private int maxSize = 10000;
+        // Entry time-to-live (ms)
+        private long ttl = 300000;
+        // Broadcast invalidations to other nodes through PostgreSQL LISTEN/NOTIFY
+        private boolean crossNodeInvalidation;
+    }
+
+    @Data
+    public static class Credentials {
+        private int maxSize = 10000;
+        // Decrypted passwords are kept only briefly (ms)
+        private long ttl = 60000;
+    }
+}
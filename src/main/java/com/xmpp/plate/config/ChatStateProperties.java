@@ -0,0 +1,52 @@
+package com.xmpp.plate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for chat state (typing indicator) handling
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-state")
+@Data
+public class ChatStateProperties {
+
+    private Store store = new Store();
+    private Debounce debounce = new Debounce();
+    private Coalesce coalesce = new Coalesce();
+    private Executor executor = new Executor();
+
+    @Data
+    public static class Store {
+        // Delay between write-behind flushes of changed states to chat_states (ms)
+        private long flushInterval = 1000;
+        // States not updated for this long are dropped (ms)
+        private long ttl = 300000;
+        // GONE states are dropped sooner (ms)
+        private long goneTtl = 30000;
+    }
+
+    @Data
+    public static class Debounce {
+        // Resolution of the COMPOSING->PAUSED timer wheel (ms)
+        private long tick = 100;
+        private int wheelSize = 512;
+    }
+
+    @Data
+    public static class Coalesce {
+        // An unchanged state is re-sent at most this often (ms)
+        private long refreshInterval = 10000;
+        // Minimum gap between forwarded states per (plate, peer); faster changes are merged (ms)
+        private long minInterval = 250;
+    }
+
+    @Data
+    public static class Executor {
+        // Platform threads draining conversation queues; unused with virtual threads, which get one per drain
+        private int threads = 64;
+        // Pending chat-state events per conversation; further events are dropped
+        private int queueCapacity = 100;
+    }
+}
@@ -0,0 +1,52 @@
+package com.xmpp.plate.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Meters recorded inline on the messaging hot paths
+ * messaging.send.stage times each step of sending a message, tagged by stage:
+ * validate, acquire (pooled session or login), send (stanza write), persist and broadcast.
+ */
+@Component
+public class MessagingMetrics {
+
+    public static final String VALIDATE = "validate";
+    public static final String ACQUIRE = "acquire";
+    public static final String SEND = "send";
+    public static final String PERSIST = "persist";
+    public static final String BROADCAST = "broadcast";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+
+    public Timer sendStage(String stage) {
+        return stageTimers.computeIfAbsent(stage, s -> Timer.builder("messaging.send.stage")
+                .description("Time spent in each stage of sending a message")
+                .tag("stage", s)
+                .register(meterRegistry));
+    }
+
+    /**
+     * Counts a request that failed with the given exception and response status
+     * The cause tag separates wrapped failures such as an XmppOperationException caused by a SASL error.
+     */
+    public void failure(Exception exception, int status) {
+        Throwable cause = exception.getCause();
+        Counter.builder("messaging.api.failures")
+                .description("Requests that ended in an error response, by exception type")
+                .tag("exception", exception.getClass().getSimpleName())
+                .tag("cause", cause == null ? "none" : cause.getClass().getSimpleName())
+                .tag("status", String.valueOf(status))
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,127 @@
+package com.xmpp.plate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for message delivery
+ */
+@Configuration
+@ConfigurationProperties(prefix = "messaging")
+@Data
+public class MessagingProperties {
+
+    private Outbox outbox = new Outbox();
+    private History history = new History();
+    private Export export = new Export();
+    private ConversationKey conversationKey = new ConversationKey();
+    private Writer writer = new Writer();
+    private Partitioning partitioning = new Partitioning();
+    private Archive archive = new Archive();
+    private Search search = new Search();
+
+    @Data
+    public static class Outbox {
+        // When enabled, send requests are queued and delivered asynchronously
+        private boolean enabled;
+        private int batchSize = 100;
+        // Delay between dispatcher polls (ms)
+        private long pollInterval = 500;
+        // Batches delivered per poll at most; the rest waits for the next poll
+        private int maxBatchesPerRun = 10;
+        // How long a claimed entry is hidden from other dispatchers (ms)
+        private long lease = 30000;
+        private int maxAttempts = 8;
+        private long initialBackoff = 1000;
+        private long maxBackoff = 300000;
+    }
+
+    @Data
+    public static class History {
+        // Page size used when a history request gives no limit
+        private int defaultPageSize = 50;
+        private int maxPageSize = 500;
+    }
+
+    @Data
+    public static class Export {
+        // Rows fetched per database round trip while streaming an export
+        private int fetchSize = 1000;
+        // Log progress every this many rows; 0 disables progress logs
+        private int progressInterval = 100000;
+    }
+
+    @Data
+    public static class ConversationKey {
+        // Rows updated per backfill run for messages stored before conversation_key existed
+        private int backfillBatchSize = 5000;
+        // Delay between backfill runs (ms)
+        private long backfillInterval = 100;
+    }
+
+    @Data
+    public static class Writer {
+        // Most rows inserted per batch
+        private int batchSize = 200;
+        // Longest a write waits for others to join its batch (ms)
+        private long maxDelay = 5;
+        // Writes waiting for a batch; callers block when it is full
+        private int queueCapacity = 10000;
+        // How long stored stanza ids are remembered to skip echoed duplicates (ms)
+        private long dedupRetention = 86400000;
+        // How often forgotten stanza ids are pruned (ms)
+        private long dedupPruneInterval = 3600000;
+    }
+
+    @Data
+    public static class Partitioning {
+        // Converts messages to a table range-partitioned on timestamp at startup
+        private boolean enabled;
+        // Partition width: day, week or month
+        private String interval = "month";
+        // Partitions created ahead of the current one
+        private int premake = 3;
+        // Partitions entirely older than this are removed; 0 keeps everything
+        private int retentionDays;
+        // detach: keep the expired partition as a standalone table; drop: delete it
+        private String retentionAction = "detach";
+        // Delay between partition maintenance runs (ms)
+        private long maintenanceInterval = 3600000;
+    }
+
+    @Data
+    public static class Archive {
+        // Moves old messages out of the messages table into compressed segment files
+        private boolean enabled;
+        // Must be shared by every node that serves history
+        private String directory = "data/archive";
+        private int olderThanDays = 365;
+        // Messages per segment file
+        private int segmentSize = 50000;
+        // Delay between archiver runs (ms)
+        private long interval = 60000;
+        // How often every node rescans the directory for segments other nodes wrote (ms)
+        private long refreshInterval = 5000;
+    }
+
+    @Data
+    public static class Search {
+        // Keeps a full-text index of message content for /api/messages/search
+        private boolean enabled;
+        private String directory = "data/search-index";
+        // Indexing memory before a segment is flushed to disk (MB)
+        private double ramBufferMb = 64;
+        // How often new messages become searchable (ms)
+        private long refreshInterval = 1000;
+        // How often the index is made durable (ms)
+        private long commitInterval = 30000;
+        private int backfillBatchSize = 5000;
+        private long backfillInterval = 1000;
+        // Message ids before the last committed position that are indexed again on start, covering
+        // transactions that committed out of id order (ids)
+        private long resumeMargin = 1000;
+        // How often archived and retention-dropped messages are removed from the index (ms)
+        private long purgeInterval = 60000;
+    }
+}
@@ -0,0 +1,149 @@
+package com.xmpp.plate.config;
+
+import com.xmpp.plate.listener.InboundMessagePipeline;
+import com.xmpp.plate.service.ChatStateService;
+import com.xmpp.plate.service.MessageArchive;
+import com.xmpp.plate.service.MessageBatchWriter;
+import com.xmpp.plate.service.MessageExportService;
+import com.xmpp.plate.service.MessageSearchService;
+import com.xmpp.plate.service.VehicleService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gauges and counters read from the components' own statistics on each scrape
+ * Nothing here is updated on the hot paths; see MessagingMetrics for inline timers. The STOMP
+ * channel executors are thread pool beans, so Spring Boot already reports them as executor.*
+ * with name=clientInboundChannelExecutor, clientOutboundChannelExecutor and brokerChannelExecutor.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder xmppSessionPoolMetrics(XmppConnectionManager connectionManager) {
+        return registry -> {
+            Gauge.builder("xmpp.pool.sessions", connectionManager, manager -> manager.getPoolStats().getSize())
+                    .description("Vehicle sessions held in the pool")
+                    .register(registry);
+            Gauge.builder("xmpp.pool.sessions.connected", connectionManager, XmppConnectionManager::getConnectedSessions)
+                    .description("Pooled vehicle sessions whose connection is up")
+                    .register(registry);
+            Gauge.builder("xmpp.pool.sessions.max", connectionManager, manager -> manager.getPoolStats().getMaxSessions())
+                    .register(registry);
+            Gauge.builder("xmpp.pool.logins.pending", connectionManager, manager -> manager.getPoolStats().getPendingLogins())
+                    .description("Logins in progress")
+                    .register(registry);
+            FunctionCounter.builder("xmpp.pool.requests", connectionManager, manager -> manager.getPoolStats().getHits())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("xmpp.pool.requests", connectionManager, manager -> manager.getPoolStats().getMisses())
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("xmpp.pool.evictions", connectionManager, manager -> manager.getPoolStats().getEvictions())
+                    .tag("reason", "size")
+                    .register(registry);
+            FunctionCounter.builder("xmpp.pool.evictions", connectionManager, manager -> manager.getPoolStats().getIdleEvictions())
+                    .tag("reason", "idle")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder chatStateMetrics(ChatStateService chatStateService) {
+        return registry -> {
+            Gauge.builder("chat.state.debounce.pending", chatStateService, service -> service.getDebounceStats().getPending())
+                    .description("Plates whose PAUSED state is waiting to be sent")
+                    .register(registry);
+            Gauge.builder("chat.state.debounce.lag.max", chatStateService, service -> service.getDebounceStats().getMaxLagMillis())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("chat.state.pairs", chatStateService, service -> service.getCoalescingStats().getTracked())
+                    .description("Plate pairs with recent chat state")
+                    .register(registry);
+            FunctionCounter.builder("chat.state.events", chatStateService, service -> service.getCoalescingStats().getForwarded())
+                    .tag("result", "forwarded")
+                    .register(registry);
+            FunctionCounter.builder("chat.state.events", chatStateService, service -> service.getCoalescingStats().getSuppressed())
+                    .tag("result", "suppressed")
+                    .register(registry);
+            FunctionCounter.builder("chat.state.events", chatStateService, service -> service.getCoalescingStats().getDeferred())
+                    .tag("result", "deferred")
+                    .register(registry);
+            Gauge.builder("chat.state.executor.queued", chatStateService, service -> service.getExecutorStats().getQueued())
+                    .description("Chat state events waiting in conversation queues")
+                    .register(registry);
+            Gauge.builder("chat.state.executor.conversations", chatStateService, service -> service.getExecutorStats().getActiveKeys())
+                    .description("Conversations with chat state events queued or running")
+                    .register(registry);
+            FunctionCounter.builder("chat.state.executor.tasks", chatStateService, service -> service.getExecutorStats().getCompleted())
+                    .tag("result", "completed")
+                    .register(registry);
+            FunctionCounter.builder("chat.state.executor.tasks", chatStateService, service -> service.getExecutorStats().getRejected())
+                    .tag("result", "rejected")
+                    .register(registry);
+            FunctionCounter.builder("chat.state.executor.tasks", chatStateService, service -> service.getExecutorStats().getFailed())
+                    .tag("result", "failed")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder messagePipelineMetrics(InboundMessagePipeline inboundPipeline, MessageBatchWriter batchWriter) {
+        return registry -> {
+            Gauge.builder("xmpp.inbound.queued", inboundPipeline, pipeline -> pipeline.getStats().getQueued())
+                    .register(registry);
+            FunctionCounter.builder("xmpp.inbound.messages", inboundPipeline, pipeline -> pipeline.getStats().getProcessed())
+                    .tag("result", "processed")
+                    .register(registry);
+            FunctionCounter.builder("xmpp.inbound.messages", inboundPipeline, pipeline -> pipeline.getStats().getDropped())
+                    .tag("result", "dropped")
+                    .register(registry);
+            FunctionCounter.builder("xmpp.inbound.messages", inboundPipeline, pipeline -> pipeline.getStats().getFailed())
+                    .tag("result", "failed")
+                    .register(registry);
+
+            Gauge.builder("messaging.writer.queued", batchWriter, writer -> writer.getStats().getQueued())
+                    .register(registry);
+            FunctionCounter.builder("messaging.writer.batches", batchWriter, writer -> writer.getStats().getBatches())
+                    .register(registry);
+            FunctionCounter.builder("messaging.writer.rows", batchWriter, writer -> writer.getStats().getRows())
+                    .tag("result", "stored")
+                    .register(registry);
+            FunctionCounter.builder("messaging.writer.rows", batchWriter, writer -> writer.getStats().getFailedRows())
+                    .tag("result", "failed")
+                    .register(registry);
+            FunctionCounter.builder("messaging.writer.rows", batchWriter, writer -> writer.getStats().getDuplicates())
+                    .tag("result", "duplicate")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder messageStorageMetrics(MessageArchive archive, MessageSearchService search,
+                                             MessageExportService export, VehicleService vehicleService) {
+        return registry -> {
+            Gauge.builder("messaging.archive.messages", archive, a -> a.getStats().getMessages())
+                    .register(registry);
+            Gauge.builder("messaging.archive.size", archive, a -> a.getStats().getSizeBytes())
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("messaging.search.documents", search, s -> s.getStats().getDocuments())
+                    .register(registry);
+            FunctionCounter.builder("messaging.search.queries", search, s -> s.getStats().getSearches())
+                    .register(registry);
+            Gauge.builder("messaging.export.active", export, MessageExportService::getActiveExports)
+                    .register(registry);
+            FunctionCounter.builder("messaging.export.rows", export, MessageExportService::getExportedRows)
+                    .register(registry);
+            FunctionCounter.builder("vehicle.cache.requests", vehicleService, service -> service.getCacheStats().getHits())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("vehicle.cache.requests", vehicleService, service -> service.getCacheStats().getMisses())
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+}
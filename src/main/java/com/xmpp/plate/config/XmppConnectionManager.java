@@ -1,50 +1,279 @@
 package com.xmpp.plate.config;
 
+import com.xmpp.plate.dto.ConnectionPoolStats;
+import com.xmpp.plate.exception.XmppOperationException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.jivesoftware.smack.ConnectionConfiguration;
 import org.jivesoftware.smack.ReconnectionManager;
+import org.jivesoftware.smack.chat2.ChatManager;
+import org.jivesoftware.smack.chat2.IncomingChatMessageListener;
 import org.jivesoftware.smack.tcp.XMPPTCPConnection;
 import org.jivesoftware.smack.tcp.XMPPTCPConnectionConfiguration;
+import org.jivesoftware.smack.xml.SmackXmlParser;
 import org.jxmpp.jid.impl.JidCreate;
 import org.jxmpp.jid.parts.Localpart;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages XMPP connections for all vehicles
- * Maintains a connection pool per plate number
+ * Maintains a bounded, LRU-ordered session pool per plate number.
+ * Sessions beyond the configured limit or idle for too long are disconnected
+ * and transparently re-established on next use.
+ * Logins are single-flight per plate and capped node-wide. With virtual threads enabled the
+ * Smack handshake runs on a small platform-thread pool, since it blocks inside synchronized code.
  */
 @Component
 @Slf4j
 public class XmppConnectionManager {
 
+    static {
+        // SmackXmlParser resolves its factory through a shared ServiceLoader, which is not thread-safe.
+        // Pin it once so parallel logins and gateway streams never race on the lookup.
+        SmackXmlParser.setXmlPullParserFactory(SmackXmlParser.getXmlPullParserFactory());
+    }
+
     @Autowired
     private XmppProperties xmppProperties;
 
-    // Connection pool: plateNumber -> XMPPTCPConnection
-    private final Map<String, XMPPTCPConnection> connectionPool = new ConcurrentHashMap<>();
+    @Autowired
+    private Environment environment;
+
+    // Looked up per connection; the listeners depend on services that depend on this manager
+    @Autowired
+    private ObjectProvider<IncomingChatMessageListener> incomingListeners;
+
+    // Connection pool: plateNumber -> pooled session, iterated least recently used first
+    private final LinkedHashMap<String, PooledConnection> connectionPool = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Guards connectionPool; never held while connecting or disconnecting
+    private final Object poolLock = new Object();
+
+    // In-flight logins: plateNumber -> future completed by the single caller doing the login
+    private final Map<String, CompletableFuture<XMPPTCPConnection>> pendingLogins = new ConcurrentHashMap<>();
+
+    // Caps parallel logins across all plates so a cold start does not flood the XMPP server
+    private Semaphore loginPermits;
+
+    // Platform threads for Smack handshakes; only used when callers run on virtual threads
+    private ExecutorService loginExecutor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalescedLogins = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong idleEvictions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int maxConcurrentLogins = Math.max(1, xmppProperties.getConnection().getPool().getMaxConcurrentLogins());
+        loginPermits = new Semaphore(maxConcurrentLogins, true);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            // Smack's connect() and login() are synchronized and wait on the connection's monitor,
+            // which would pin a virtual thread to its carrier for the whole handshake
+            AtomicInteger threadCount = new AtomicInteger();
+            loginExecutor = Executors.newFixedThreadPool(maxConcurrentLogins, runnable -> {
+                Thread thread = new Thread(runnable, "xmpp-login-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Virtual threads enabled; XMPP logins run on {} platform threads", maxConcurrentLogins);
+        }
+    }
 
     /**
-     * Creates and returns an XMPP connection for a vehicle
+     * Returns a pooled XMPP connection for a vehicle, logging in lazily if needed.
+     * Concurrent callers for the same plate share one login.
      */
     public XMPPTCPConnection getConnection(String plateNumber, String password) throws Exception {
-        if (connectionPool.containsKey(plateNumber)) {
-            XMPPTCPConnection existingConnection = connectionPool.get(plateNumber);
-            if (existingConnection.isConnected()) {
+        XMPPTCPConnection existingConnection = acquire(plateNumber);
+        if (existingConnection != null) {
+            hits.incrementAndGet();
+            return existingConnection;
+        }
+
+        CompletableFuture<XMPPTCPConnection> login = new CompletableFuture<>();
+        CompletableFuture<XMPPTCPConnection> inFlight = pendingLogins.putIfAbsent(plateNumber, login);
+        if (inFlight != null) {
+            // Another caller is already logging this plate in
+            coalescedLogins.incrementAndGet();
+            return awaitLogin(plateNumber, inFlight);
+        }
+
+        try {
+            // A previous login may have completed between the lookup and claiming the slot
+            existingConnection = acquire(plateNumber);
+            if (existingConnection != null) {
+                hits.incrementAndGet();
+                login.complete(existingConnection);
                 return existingConnection;
-            } else {
-                // Remove stale connection
-                connectionPool.remove(plateNumber);
             }
+            misses.incrementAndGet();
+
+            // Create new connection outside the pool lock
+            XMPPTCPConnection connection = createConnectionWithPermit(plateNumber, password);
+
+            List<PooledConnection> evicted = new ArrayList<>();
+            synchronized (poolLock) {
+                PooledConnection previous = connectionPool.put(plateNumber, new PooledConnection(connection));
+                if (previous != null) {
+                    evicted.add(previous);
+                }
+                evicted.addAll(trimToSize());
+            }
+            disconnectQuietly(evicted);
+
+            login.complete(connection);
+            return connection;
+        } catch (Exception e) {
+            login.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingLogins.remove(plateNumber, login);
         }
+    }
 
-        // Create new connection
-        XMPPTCPConnection connection = createConnection(plateNumber, password);
-        connectionPool.put(plateNumber, connection);
-        return connection;
+    /**
+     * Waits for a login started by another caller
+     */
+    private XMPPTCPConnection awaitLogin(String plateNumber, CompletableFuture<XMPPTCPConnection> inFlight)
+            throws Exception {
+        try {
+            return inFlight.get(getLoginTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (TimeoutException e) {
+            throw new XmppOperationException("Timed out waiting for XMPP login of plate: " + plateNumber, e);
+        }
+    }
+
+    /**
+     * Creates a connection once a node-wide login permit is available
+     */
+    private XMPPTCPConnection createConnectionWithPermit(String plateNumber, String password) throws Exception {
+        if (!loginPermits.tryAcquire(getLoginTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+            throw new XmppOperationException("Timed out waiting for a free XMPP login slot for plate: " + plateNumber);
+        }
+        try {
+            if (loginExecutor == null) {
+                return createConnection(plateNumber, password);
+            }
+            // The virtual thread parks on the future instead of pinning its carrier
+            CompletableFuture<XMPPTCPConnection> handshake = new CompletableFuture<>();
+            loginExecutor.execute(() -> {
+                try {
+                    handshake.complete(createConnection(plateNumber, password));
+                } catch (Exception e) {
+                    handshake.completeExceptionally(e);
+                }
+            });
+            try {
+                return handshake.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        } finally {
+            loginPermits.release();
+        }
+    }
+
+    /**
+     * Looks up a live pooled connection and marks it as recently used
+     */
+    private XMPPTCPConnection acquire(String plateNumber) {
+        PooledConnection stale;
+        synchronized (poolLock) {
+            PooledConnection pooled = connectionPool.get(plateNumber);
+            if (pooled == null) {
+                return null;
+            }
+            if (pooled.connection.isConnected()) {
+                pooled.touch();
+                return pooled.connection;
+            }
+            // Remove stale connection
+            stale = connectionPool.remove(plateNumber);
+        }
+        disconnectQuietly(List.of(stale));
+        return null;
+    }
+
+    /**
+     * Removes least recently used sessions until the pool fits its limit.
+     * Must be called while holding poolLock.
+     */
+    private List<PooledConnection> trimToSize() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        int maxSessions = getMaxSessions();
+        Iterator<Map.Entry<String, PooledConnection>> iterator = connectionPool.entrySet().iterator();
+        while (connectionPool.size() > maxSessions && iterator.hasNext()) {
+            Map.Entry<String, PooledConnection> eldest = iterator.next();
+            iterator.remove();
+            evicted.add(eldest.getValue());
+            evictions.incrementAndGet();
+            log.debug("Evicted least recently used XMPP session for plate: {}", eldest.getKey());
+        }
+        return evicted;
+    }
+
+    /**
+     * Disconnects sessions that have been idle longer than the configured timeout
+     */
+    @Scheduled(fixedDelayString = "${xmpp.connection.pool.eviction-interval:60000}")
+    public void evictIdleConnections() {
+        long idleTimeout = xmppProperties.getConnection().getPool().getIdleTimeout();
+        if (idleTimeout <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleTimeout;
+
+        List<PooledConnection> idle = new ArrayList<>();
+        synchronized (poolLock) {
+            // Scan the whole pool: lookups such as isConnected reorder entries without touching lastUsed
+            Iterator<PooledConnection> iterator = connectionPool.values().iterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooled = iterator.next();
+                if (pooled.lastUsed < cutoff) {
+                    iterator.remove();
+                    idle.add(pooled);
+                }
+            }
+        }
+
+        if (!idle.isEmpty()) {
+            idleEvictions.addAndGet(idle.size());
+            log.info("Disconnecting {} idle XMPP sessions", idle.size());
+            disconnectQuietly(idle);
+        }
+        log.debug("XMPP session pool stats: {}", getPoolStats());
     }
 
     /**
@@ -74,6 +303,10 @@ public class XmppConnectionManager {
             reconnectionManager.setReconnectionPolicy(ReconnectionManager.ReconnectionPolicy.FIXED_DELAY);
         }
 
+        // Registered before login so nothing delivered right after it is missed
+        ChatManager chatManager = ChatManager.getInstanceFor(connection);
+        incomingListeners.orderedStream().forEach(chatManager::addIncomingListener);
+
         connection.connect();
         connection.login();
 
@@ -85,17 +318,12 @@ public class XmppConnectionManager {
      * Disconnects and removes connection for a plate
      */
     public void removeConnection(String plateNumber) {
-        XMPPTCPConnection connection = connectionPool.get(plateNumber);
-        if (connection != null) {
-            try {
-                if (connection.isConnected()) {
-                    connection.disconnect();
-                }
-            } catch (Exception e) {
-                log.error("Error disconnecting XMPP connection for plate: {}", plateNumber, e);
-            } finally {
-                connectionPool.remove(plateNumber);
-            }
+        PooledConnection pooled;
+        synchronized (poolLock) {
+            pooled = connectionPool.remove(plateNumber);
+        }
+        if (pooled != null) {
+            disconnectQuietly(List.of(pooled));
         }
     }
 
@@ -103,8 +331,10 @@ public class XmppConnectionManager {
      * Checks if a connection exists and is active
      */
     public boolean isConnected(String plateNumber) {
-        XMPPTCPConnection connection = connectionPool.get(plateNumber);
-        return connection != null && connection.isConnected();
+        synchronized (poolLock) {
+            PooledConnection pooled = connectionPool.get(plateNumber);
+            return pooled != null && pooled.connection.isConnected();
+        }
     }
 
     /**
@@ -135,17 +365,87 @@ public class XmppConnectionManager {
     /**
      * Disconnects all connections (cleanup)
      */
+    @PreDestroy
     public void disconnectAll() {
         log.info("Disconnecting all XMPP connections");
-        connectionPool.forEach((plateNumber, connection) -> {
+        List<PooledConnection> all;
+        synchronized (poolLock) {
+            all = new ArrayList<>(connectionPool.values());
+            connectionPool.clear();
+        }
+        disconnectQuietly(all);
+        if (loginExecutor != null) {
+            loginExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a snapshot of pool usage counters
+     */
+    public ConnectionPoolStats getPoolStats() {
+        int size;
+        synchronized (poolLock) {
+            size = connectionPool.size();
+        }
+        return ConnectionPoolStats.builder()
+                .size(size)
+                .maxSessions(getMaxSessions())
+                .pendingLogins(pendingLogins.size())
+                .hits(hits.get())
+                .misses(misses.get())
+                .coalescedLogins(coalescedLogins.get())
+                .evictions(evictions.get())
+                .idleEvictions(idleEvictions.get())
+                .build();
+    }
+
+    /**
+     * Counts pooled sessions whose connection is currently up
+     */
+    public int getConnectedSessions() {
+        synchronized (poolLock) {
+            return (int) connectionPool.values().stream()
+                    .filter(pooled -> pooled.connection.isConnected())
+                    .count();
+        }
+    }
+
+    private int getMaxSessions() {
+        return Math.max(1, xmppProperties.getConnection().getPool().getSize());
+    }
+
+    private long getLoginTimeoutMillis() {
+        int timeout = xmppProperties.getConnection().getTimeout();
+        return timeout > 0 ? timeout : 30000;
+    }
+
+    private void disconnectQuietly(List<PooledConnection> connections) {
+        for (PooledConnection pooled : connections) {
             try {
-                if (connection.isConnected()) {
-                    connection.disconnect();
+                if (pooled.connection.isConnected()) {
+                    pooled.connection.disconnect();
                 }
             } catch (Exception e) {
-                log.error("Error disconnecting connection for plate: {}", plateNumber, e);
+                log.error("Error disconnecting XMPP connection for user: {}", pooled.connection.getUser(), e);
             }
-        });
-        connectionPool.clear();
+        }
+    }
+
+    /**
+     * Pool entry holding a session and its last access time
+     */
+    private static final class PooledConnection {
+
+        private final XMPPTCPConnection connection;
+        private volatile long lastUsed;
+
+        private PooledConnection(XMPPTCPConnection connection) {
+            this.connection = connection;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        private void touch() {
+            lastUsed = System.currentTimeMillis();
+        }
     }
 }
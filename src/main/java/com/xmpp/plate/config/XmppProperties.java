@@ -16,9 +16,11 @@ public class XmppProperties {
     private int port;
     private String domain;
     private String serviceName;
-    
+
     private Admin admin = new Admin();
     private Connection connection = new Connection();
+    private Transport transport = new Transport();
+    private Inbound inbound = new Inbound();
 
     @Data
     public static class Admin {
@@ -34,7 +36,14 @@ public class XmppProperties {
 
         @Data
         public static class Pool {
-            private int size;
+            // Maximum number of live vehicle sessions kept by this node
+            private int size = 1000;
+            // Sessions unused for longer than this are disconnected (ms)
+            private long idleTimeout = 300000;
+            // How often the idle sweep runs (ms)
+            private long evictionInterval = 60000;
+            // Maximum number of XMPP logins running in parallel on this node
+            private int maxConcurrentLogins = 16;
         }
 
         @Data
@@ -43,4 +52,35 @@ public class XmppProperties {
             private int delay;
         }
     }
+
+    @Data
+    public static class Transport {
+        // client: one logged-in session per plate; component: shared XEP-0114 gateway connections
+        private String mode = "client";
+        private Component component = new Component();
+
+        @Data
+        public static class Component {
+            // Component domain is <subdomain>.<xmpp.domain>; plates send as <plate>@<component domain>
+            private String subdomain = "plates";
+            private String host;
+            private int port = 5275;
+            private String secret;
+            // Number of multiplexed gateway connections
+            private int connections = 2;
+            // Starts an in-process stand-in component server on the configured port
+            private boolean embeddedServer;
+        }
+    }
+
+    @Data
+    public static class Inbound {
+        // Messages received over XMPP wait here until a worker stores them
+        private int queueCapacity = 10000;
+        private int workers = 4;
+        // When the queue is full - block: wait up to offer-timeout, then drop; drop: drop at once
+        private String overflow = "block";
+        // Longest an XMPP reader thread waits for queue space (ms)
+        private long offerTimeout = 1000;
+    }
 }
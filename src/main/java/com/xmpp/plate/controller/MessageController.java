@@ -1,16 +1,29 @@
 package com.xmpp.plate.controller;
 
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.dto.BatchMessageRequest;
+import com.xmpp.plate.dto.BatchMessageResponse;
+import com.xmpp.plate.dto.MessagePageResponse;
 import com.xmpp.plate.dto.MessageRequest;
 import com.xmpp.plate.dto.MessageResponse;
+import com.xmpp.plate.dto.ReadReceipt;
+import com.xmpp.plate.service.MessageExportService;
+import com.xmpp.plate.service.MessageSearchService;
 import com.xmpp.plate.service.MessageService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for message operations
@@ -23,40 +36,110 @@ public class MessageController {
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private MessageExportService messageExportService;
+
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
     /**
      * Send a message
      * POST /api/messages/send
+     * Returns 202 Accepted when the outbox is enabled and delivery happens asynchronously
      */
     @PostMapping("/send")
     public ResponseEntity<MessageResponse> sendMessage(@Valid @RequestBody MessageRequest request) {
         log.info("Received request to send message from {} to {}", 
             request.getFromPlateNumber(), request.getToPlateNumber());
+        if (messagingProperties.getOutbox().isEnabled()) {
+            MessageResponse queued = messageService.queueMessage(request);
+            return new ResponseEntity<>(queued, HttpStatus.ACCEPTED);
+        }
         MessageResponse response = messageService.sendMessage(request);
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
     /**
-     * Get message history for a plate
-     * GET /api/messages/{plateNumber}
+     * Send messages from one vehicle to many
+     * POST /api/messages/send/batch
+     * Returns per-item results; 202 Accepted when the outbox is enabled
+     */
+    @PostMapping("/send/batch")
+    public ResponseEntity<BatchMessageResponse> sendBatch(@Valid @RequestBody BatchMessageRequest request) {
+        log.info("Received request to send message batch from {}", request.getFromPlateNumber());
+        BatchMessageResponse response = messageService.sendBatch(request);
+        HttpStatus status = messagingProperties.getOutbox().isEnabled() ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return new ResponseEntity<>(response, status);
+    }
+
+    /**
+     * Get message history for a plate, newest first
+     * GET /api/messages/{plateNumber}?limit=50&before={cursor}|after={cursor}
      */
     @GetMapping("/{plateNumber}")
-    public ResponseEntity<List<MessageResponse>> getMessageHistory(@PathVariable String plateNumber) {
+    public ResponseEntity<MessagePageResponse> getMessageHistory(
+            @PathVariable String plateNumber,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after) {
         log.info("Received request to get message history for plate: {}", plateNumber);
-        List<MessageResponse> responses = messageService.getMessageHistory(plateNumber);
-        return ResponseEntity.ok(responses);
+        MessagePageResponse page = messageService.getMessageHistory(plateNumber, limit, before, after);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Search message content, newest first; every word must match
+     * GET /api/messages/search?q=accident&plate=34ABC123&plate=06XYZ789&from=...&to=...&limit=50&before={cursor}
+     */
+    @GetMapping("/search")
+    public ResponseEntity<MessagePageResponse> searchMessages(
+            @RequestParam String q,
+            @RequestParam(name = "plate", required = false) List<String> plates,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before) {
+        log.info("Received request to search messages for '{}' in plates {}", q, plates);
+        MessagePageResponse page = messageSearchService.search(q, plates, from, to, limit, before);
+        return ResponseEntity.ok(page);
     }
 
     /**
-     * Get conversation between two plates
-     * GET /api/messages/conversation/{plate1}/{plate2}
+     * Get conversation between two plates, oldest first within each page
+     * GET /api/messages/conversation/{plate1}/{plate2}?limit=50&before={cursor}|after={cursor}
      */
     @GetMapping("/conversation/{plate1}/{plate2}")
-    public ResponseEntity<List<MessageResponse>> getConversation(
+    public ResponseEntity<MessagePageResponse> getConversation(
             @PathVariable String plate1,
-            @PathVariable String plate2) {
+            @PathVariable String plate2,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after) {
         log.info("Received request to get conversation between {} and {}", plate1, plate2);
-        List<MessageResponse> responses = messageService.getConversation(plate1, plate2);
-        return ResponseEntity.ok(responses);
+        MessagePageResponse page = messageService.getConversation(plate1, plate2, limit, before, after);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Export the full message history for a plate as NDJSON, oldest first
+     * GET /api/messages/{plateNumber}/export?gzip=true
+     */
+    @GetMapping("/{plateNumber}/export")
+    public ResponseEntity<StreamingResponseBody> exportMessageHistory(
+            @PathVariable String plateNumber,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        log.info("Received request to export message history for plate: {}", plateNumber);
+        messageExportService.checkExportable(plateNumber);
+
+        String filename = plateNumber + "-messages.ndjson" + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> messageExportService.exportHistory(plateNumber, out, gzip);
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
     }
 
     /**
@@ -70,6 +153,21 @@ public class MessageController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Mark everything a peer sent to a plate as read, up to a message or a point in time
+     * PUT /api/messages/conversation/{plateNumber}/{peerPlateNumber}/read?upToMessageId=123|upTo=2024-01-15T10:30:00
+     */
+    @PutMapping("/conversation/{plateNumber}/{peerPlateNumber}/read")
+    public ResponseEntity<ReadReceipt> markConversationRead(
+            @PathVariable String plateNumber,
+            @PathVariable String peerPlateNumber,
+            @RequestParam(required = false) Long upToMessageId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime upTo) {
+        log.info("Received request to mark messages from {} to {} as read", peerPlateNumber, plateNumber);
+        ReadReceipt receipt = messageService.markConversationRead(plateNumber, peerPlateNumber, upToMessageId, upTo);
+        return ResponseEntity.ok(receipt);
+    }
+
     /**
      * Get unread message count
      * GET /api/messages/{plateNumber}/unread-count
@@ -80,4 +178,15 @@ public class MessageController {
         long count = messageService.getUnreadCount(plateNumber);
         return ResponseEntity.ok(count);
     }
+
+    /**
+     * Get unread message counts per sending plate
+     * GET /api/messages/{plateNumber}/unread-counts
+     */
+    @GetMapping("/{plateNumber}/unread-counts")
+    public ResponseEntity<Map<String, Long>> getUnreadCountsByPeer(@PathVariable String plateNumber) {
+        log.info("Received request to get unread counts by peer for plate: {}", plateNumber);
+        Map<String, Long> counts = messageService.getUnreadCountsByPeer(plateNumber);
+        return ResponseEntity.ok(counts);
+    }
 }
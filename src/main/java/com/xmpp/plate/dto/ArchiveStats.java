@@ -0,0 +1,24 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for cold-storage message archive statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchiveStats {
+
+    private int segments;
+    private long messages;
+    private long sizeBytes;
+    // Timestamp of the newest archived message; older history is served from segment files
+    private LocalDateTime archivedUpTo;
+}
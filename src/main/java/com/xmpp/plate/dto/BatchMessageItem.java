@@ -0,0 +1,23 @@
+package com.xmpp.plate.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for one recipient-specific message in a batch
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchMessageItem {
+
+    @NotBlank(message = "To plate number is required")
+    private String toPlateNumber;
+
+    @NotBlank(message = "Message content is required")
+    private String messageContent;
+}
@@ -0,0 +1,48 @@
+package com.xmpp.plate.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for sending messages from one vehicle to many
+ * Either toPlateNumbers with a shared messageContent (fan-out), or per-recipient items
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchMessageRequest {
+
+    @NotBlank(message = "From plate number is required")
+    private String fromPlateNumber;
+
+    @Size(max = 1000, message = "At most 1000 recipients per batch")
+    private List<String> toPlateNumbers;
+
+    private String messageContent;
+
+    @Valid
+    @Size(max = 1000, message = "At most 1000 items per batch")
+    private List<BatchMessageItem> items;
+
+    @Builder.Default
+    private String messageType = "TEXT";
+
+    @JsonIgnore
+    @AssertTrue(message = "Provide either toPlateNumbers with messageContent, or items")
+    public boolean isWellFormed() {
+        boolean fanOut = toPlateNumbers != null && !toPlateNumbers.isEmpty()
+                && messageContent != null && !messageContent.isBlank();
+        boolean itemized = items != null && !items.isEmpty();
+        return fanOut != itemized;
+    }
+}
@@ -0,0 +1,23 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for batch send results, in request order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchMessageResponse {
+
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<BatchMessageResult> results;
+}
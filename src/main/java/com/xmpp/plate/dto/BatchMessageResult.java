@@ -0,0 +1,22 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for the outcome of one message in a batch
+ * Status: SENT, QUEUED, FAILED, NOT_FOUND
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchMessageResult {
+
+    private String toPlateNumber;
+    private String status;
+    private MessageResponse message;
+    private String error;
+}
@@ -0,0 +1,25 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for message batch writer statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchWriterStats {
+
+    // Write requests waiting for the next batch
+    private int queued;
+    private long batches;
+    private long rows;
+    private long failedRows;
+    // Messages skipped because their stanza id was already stored
+    private long duplicates;
+    private int largestBatch;
+}
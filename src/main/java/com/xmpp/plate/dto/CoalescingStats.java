@@ -0,0 +1,24 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for state coalescing statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CoalescingStats {
+
+    private String name;
+    private int tracked;
+    private long forwarded;
+    // Repeats of the last forwarded state inside the refresh interval
+    private long suppressed;
+    // Changes held back by the rate limit; only the latest is sent when it lifts
+    private long deferred;
+}
@@ -0,0 +1,25 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for XMPP session pool statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConnectionPoolStats {
+
+    private int size;
+    private int maxSessions;
+    private int pendingLogins;
+    private long hits;
+    private long misses;
+    private long coalescedLogins;
+    private long evictions;
+    private long idleEvictions;
+}
@@ -0,0 +1,24 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for inbound XMPP message pipeline statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InboundPipelineStats {
+
+    private int queued;
+    private int capacity;
+    private long accepted;
+    private long processed;
+    // Messages lost because the queue stayed full
+    private long dropped;
+    private long failed;
+}
@@ -0,0 +1,25 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for one page of message history
+ * Pass olderCursor as "before" to page back in time and newerCursor as "after" to fetch newer messages.
+ * olderCursor is null once the oldest message has been reached; a page shorter than the limit
+ * fetched with "after" means there is nothing newer yet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessagePageResponse {
+
+    private List<MessageResponse> messages;
+    private String olderCursor;
+    private String newerCursor;
+}
@@ -0,0 +1,28 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for a bulk read receipt
+ * Returned to the reader and pushed to /topic/read-receipts/{senderPlateNumber}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReadReceipt {
+
+    private String readerPlateNumber;
+    private String senderPlateNumber;
+    // Every message from the sender up to and including this point is now read
+    private LocalDateTime readUpTo;
+    private Long readUpToMessageId;
+    private LocalDateTime readAt;
+    // Messages that changed from unread to read
+    private int markedCount;
+}
@@ -0,0 +1,22 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for message search index statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SearchIndexStats {
+
+    // Documents visible to searches, as of the last refresh
+    private int documents;
+    private long indexed;
+    private long searches;
+    private boolean backfillComplete;
+}
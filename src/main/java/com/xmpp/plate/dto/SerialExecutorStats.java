@@ -0,0 +1,29 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for per-key serial executor statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SerialExecutorStats {
+
+    private String name;
+    // Pending tasks allowed per key
+    private int keyCapacity;
+    // Tasks waiting over all keys
+    private int queued;
+    // Keys with tasks queued or running
+    private int activeKeys;
+    private long accepted;
+    private long completed;
+    // Tasks turned away because their key's queue was full or the executor stopped
+    private long rejected;
+    private long failed;
+}
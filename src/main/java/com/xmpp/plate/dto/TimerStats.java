@@ -0,0 +1,23 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for timer wheel statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TimerStats {
+
+    private String name;
+    private int pending;
+    private long fired;
+    // How late timers fired relative to their deadline
+    private long lastLagMillis;
+    private long maxLagMillis;
+}
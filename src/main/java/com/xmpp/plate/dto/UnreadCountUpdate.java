@@ -0,0 +1,23 @@
+package com.xmpp.plate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO pushed to /topic/unread/{plateNumber} when an unread count changes
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UnreadCountUpdate {
+
+    private String plateNumber;
+    private String peerPlateNumber;
+    // Unread messages from peerPlateNumber
+    private long conversationUnread;
+    // Unread messages from all peers
+    private long totalUnread;
+}
@@ -12,8 +12,8 @@ import java.time.LocalDateTime;
  * States: ACTIVE, COMPOSING, PAUSED, INACTIVE, GONE
  */
 @Entity
-@Table(name = "chat_states", indexes = {
-    @Index(name = "idx_plate_chat_state", columnList = "plate_number, chat_with_plate")
+@Table(name = "chat_states", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_chat_state_plate_peer", columnNames = {"plate_number", "chat_with_plate"})
 })
 @Data
 @NoArgsConstructor
@@ -12,9 +12,11 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "messages", indexes = {
-    @Index(name = "idx_from_plate", columnList = "from_plate_number"),
-    @Index(name = "idx_to_plate", columnList = "to_plate_number"),
-    @Index(name = "idx_timestamp", columnList = "timestamp")
+    @Index(name = "idx_from_plate_timestamp", columnList = "from_plate_number, timestamp, id"),
+    @Index(name = "idx_to_plate_timestamp", columnList = "to_plate_number, timestamp, id"),
+    @Index(name = "idx_conversation_key_timestamp", columnList = "conversation_key, timestamp, id"),
+    @Index(name = "idx_timestamp", columnList = "timestamp"),
+    @Index(name = "idx_xmpp_message_id", columnList = "xmpp_message_id")
 })
 @Data
 @NoArgsConstructor
@@ -32,6 +34,10 @@ public class Message {
     @Column(name = "to_plate_number", nullable = false, length = 20)
     private String toPlateNumber;
 
+    // Sorted plate pair shared by both directions of a conversation; see conversationKey()
+    @Column(name = "conversation_key", length = 41)
+    private String conversationKey;
+
     @Column(name = "message_content", nullable = false, columnDefinition = "TEXT")
     private String messageContent;
 
@@ -64,5 +70,16 @@ public class Message {
         if (timestamp == null) {
             timestamp = LocalDateTime.now();
         }
+        if (conversationKey == null) {
+            conversationKey = conversationKey(fromPlateNumber, toPlateNumber);
+        }
+    }
+
+    /**
+     * Normalized key for the conversation between two plates, independent of direction
+     * Plates are ordered by code point, matching COLLATE "C" in the backfill query.
+     */
+    public static String conversationKey(String plate1, String plate2) {
+        return plate1.compareTo(plate2) <= 0 ? plate1 + "|" + plate2 : plate2 + "|" + plate1;
     }
 }
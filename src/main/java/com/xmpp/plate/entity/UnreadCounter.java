@@ -0,0 +1,36 @@
+package com.xmpp.plate.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity for the number of unread messages a plate has from one peer
+ * Maintained as deltas when messages are stored or read; the plate's total is the sum over its peers.
+ */
+@Entity
+@Table(name = "unread_counters", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_unread_counter_plate_peer", columnNames = {"plate_number", "peer_plate_number"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UnreadCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "plate_number", nullable = false, length = 20)
+    private String plateNumber;
+
+    @Column(name = "peer_plate_number", nullable = false, length = 20)
+    private String peerPlateNumber;
+
+    @Column(name = "unread_count", nullable = false)
+    @Builder.Default
+    private Long unreadCount = 0L;
+}
@@ -0,0 +1,21 @@
+package com.xmpp.plate.event;
+
+import com.xmpp.plate.entity.Message;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+/**
+ * Published inside the transaction that stores new messages
+ */
+@Getter
+public class MessagesStoredEvent extends ApplicationEvent {
+
+    private final List<Message> messages;
+
+    public MessagesStoredEvent(Object source, List<Message> messages) {
+        super(source);
+        this.messages = messages;
+    }
+}
@@ -0,0 +1,26 @@
+package com.xmpp.plate.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a plate's unread count for one peer changes
+ * Carries the counts as written by the change, so listeners need not read them back.
+ */
+@Getter
+public class UnreadCountChangedEvent extends ApplicationEvent {
+
+    private final String plateNumber;
+    private final String peerPlateNumber;
+    private final long conversationUnread;
+    private final long totalUnread;
+
+    public UnreadCountChangedEvent(Object source, String plateNumber, String peerPlateNumber,
+                                   long conversationUnread, long totalUnread) {
+        super(source);
+        this.plateNumber = plateNumber;
+        this.peerPlateNumber = peerPlateNumber;
+        this.conversationUnread = conversationUnread;
+        this.totalUnread = totalUnread;
+    }
+}
@@ -0,0 +1,18 @@
+package com.xmpp.plate.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a vehicle mapping is created, updated or deleted
+ */
+@Getter
+public class VehicleChangedEvent extends ApplicationEvent {
+
+    private final String plateNumber;
+
+    public VehicleChangedEvent(Object source, String plateNumber) {
+        super(source);
+        this.plateNumber = plateNumber;
+    }
+}
@@ -1,7 +1,9 @@
 package com.xmpp.plate.exception;
 
+import com.xmpp.plate.config.MessagingMetrics;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -20,6 +22,9 @@ import java.util.Map;
 @Slf4j
 public class GlobalExceptionHandler {
 
+    @Autowired
+    private MessagingMetrics messagingMetrics;
+
     @ExceptionHandler(VehicleNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleVehicleNotFoundException(
             VehicleNotFoundException ex, HttpServletRequest request) {
@@ -33,6 +38,26 @@ public class GlobalExceptionHandler {
                 .timestamp(LocalDateTime.now())
                 .build();
         
+        messagingMetrics.failure(ex, HttpStatus.NOT_FOUND.value());
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(MessageNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleMessageNotFoundException(
+            MessageNotFoundException ex, HttpServletRequest request) {
+        log.error("Message not found: {}", ex.getMessage());
+
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .status(HttpStatus.NOT_FOUND.value())
+                .error("Not Found")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        messagingMetrics.failure(ex, HttpStatus.NOT_FOUND.value());
+
         return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
     }
 
@@ -49,6 +74,8 @@ public class GlobalExceptionHandler {
                 .timestamp(LocalDateTime.now())
                 .build();
         
+        messagingMetrics.failure(ex, HttpStatus.CONFLICT.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
     }
 
@@ -65,9 +92,47 @@ public class GlobalExceptionHandler {
                 .timestamp(LocalDateTime.now())
                 .build();
         
+        messagingMetrics.failure(ex, HttpStatus.INTERNAL_SERVER_ERROR.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler(SearchUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleSearchUnavailableException(
+            SearchUnavailableException ex, HttpServletRequest request) {
+        log.error("Message search unavailable: {}", ex.getMessage());
+
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("Service Unavailable")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        messagingMetrics.failure(ex, HttpStatus.SERVICE_UNAVAILABLE.value());
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidCursorException(
+            InvalidCursorException ex, HttpServletRequest request) {
+        log.error("Invalid pagination cursor: {}", ex.getMessage());
+
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .status(HttpStatus.BAD_REQUEST.value())
+                .error("Bad Request")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        messagingMetrics.failure(ex, HttpStatus.BAD_REQUEST.value());
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleValidationExceptions(
             MethodArgumentNotValidException ex, HttpServletRequest request) {
@@ -88,6 +153,8 @@ public class GlobalExceptionHandler {
                 .timestamp(LocalDateTime.now())
                 .build();
         
+        messagingMetrics.failure(ex, HttpStatus.BAD_REQUEST.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
@@ -104,6 +171,8 @@ public class GlobalExceptionHandler {
                 .timestamp(LocalDateTime.now())
                 .build();
         
+        messagingMetrics.failure(ex, HttpStatus.INTERNAL_SERVER_ERROR.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
@@ -0,0 +1,15 @@
+package com.xmpp.plate.exception;
+
+/**
+ * Exception thrown when a pagination cursor cannot be decoded
+ */
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
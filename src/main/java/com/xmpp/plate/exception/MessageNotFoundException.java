@@ -0,0 +1,15 @@
+package com.xmpp.plate.exception;
+
+/**
+ * Exception thrown when a message is not found
+ */
+public class MessageNotFoundException extends RuntimeException {
+
+    public MessageNotFoundException(String message) {
+        super(message);
+    }
+
+    public MessageNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
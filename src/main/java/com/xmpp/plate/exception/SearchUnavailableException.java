@@ -0,0 +1,15 @@
+package com.xmpp.plate.exception;
+
+/**
+ * Exception thrown when message search is disabled or its index cannot be read
+ */
+public class SearchUnavailableException extends RuntimeException {
+
+    public SearchUnavailableException(String message) {
+        super(message);
+    }
+
+    public SearchUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,20 @@
+package com.xmpp.plate.listener;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Chat message received over XMPP, waiting to be stored
+ */
+@Value
+@Builder
+public class InboundMessage {
+
+    String fromPlateNumber;
+    String toPlateNumber;
+    String body;
+    String stanzaId;
+    LocalDateTime receivedAt;
+}
@@ -0,0 +1,145 @@
+package com.xmpp.plate.listener;
+
+import com.xmpp.plate.config.XmppProperties;
+import com.xmpp.plate.dto.InboundPipelineStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded hand-off between XMPP reader threads and the workers that store received messages
+ * When the queue is full, readers either wait up to xmpp.inbound.offer-timeout (block) or
+ * give up at once (drop); every lost message is logged and counted.
+ */
+@Component
+@Slf4j
+public class InboundMessagePipeline {
+
+    @Autowired
+    private XmppProperties xmppProperties;
+
+    @Autowired
+    private InboundMessageProcessor processor;
+
+    private BlockingQueue<InboundMessage> queue;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        XmppProperties.Inbound inbound = xmppProperties.getInbound();
+        queue = new ArrayBlockingQueue<>(Math.max(1, inbound.getQueueCapacity()));
+        for (int i = 0; i < Math.max(1, inbound.getWorkers()); i++) {
+            Thread worker = new Thread(this::work, "xmpp-inbound-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Inbound XMPP pipeline started: {} workers, queue capacity {}, overflow {}",
+            workers.size(), inbound.getQueueCapacity(), inbound.getOverflow());
+    }
+
+    /**
+     * Queues a received message; called on Smack's reader threads
+     * @return false if the message was dropped
+     */
+    public boolean submit(InboundMessage message) {
+        boolean queued;
+        if ("drop".equalsIgnoreCase(xmppProperties.getInbound().getOverflow())) {
+            queued = queue.offer(message);
+        } else {
+            try {
+                queued = queue.offer(message, xmppProperties.getInbound().getOfferTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        }
+
+        if (queued) {
+            accepted.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+            log.warn("Inbound XMPP queue full, dropped message {} from {} to {}",
+                message.getStanzaId(), message.getFromPlateNumber(), message.getToPlateNumber());
+        }
+        return queued;
+    }
+
+    public InboundPipelineStats getStats() {
+        return InboundPipelineStats.builder()
+                .queued(queue.size())
+                .capacity(queue.size() + queue.remainingCapacity())
+                .accepted(accepted.get())
+                .processed(processed.get())
+                .dropped(dropped.get())
+                .failed(failed.get())
+                .build();
+    }
+
+    private void work() {
+        while (running || !queue.isEmpty()) {
+            InboundMessage message;
+            try {
+                message = queue.poll(500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (message == null) {
+                continue;
+            }
+            try {
+                processor.process(message).whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        processed.incrementAndGet();
+                    } else {
+                        failed(message, error);
+                    }
+                });
+            } catch (Exception e) {
+                failed(message, e);
+            }
+        }
+    }
+
+    private void failed(InboundMessage message, Throwable error) {
+        failed.incrementAndGet();
+        log.error("Error processing incoming message {} from {}", message.getStanzaId(), message.getFromPlateNumber(), error);
+    }
+
+    /**
+     * Lets workers drain what is already queued before the context closes
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Inbound XMPP pipeline stopped with {} messages unprocessed", queue.size());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.xmpp.plate.listener;
+
+import com.xmpp.plate.dto.MessageResponse;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.service.MessageBatchWriter;
+import com.xmpp.plate.service.MessageService;
+import com.xmpp.plate.transport.SentStanzaTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores a received XMPP message and broadcasts it to WebSocket subscribers
+ * Runs on inbound pipeline workers, never on Smack's reader threads. The insert goes
+ * through the batch writer, so workers only wait when the writer's queue is full.
+ */
+@Component
+@Slf4j
+public class InboundMessageProcessor {
+
+    // Column lengths of the messages table
+    private static final int MAX_PLATE_LENGTH = 20;
+    private static final int MAX_STANZA_ID_LENGTH = 100;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageBatchWriter messageBatchWriter;
+
+    @Autowired
+    private SentStanzaTracker sentStanzaTracker;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * @return completes once the message is stored and broadcast, or was skipped
+     */
+    public CompletableFuture<Void> process(InboundMessage inbound) {
+        // A row the messages table cannot hold would otherwise fail the whole write batch
+        if (!isStorable(inbound)) {
+            log.warn("Dropping malformed inbound message {} from {} to {}",
+                inbound.getStanzaId(), inbound.getFromPlateNumber(), inbound.getToPlateNumber());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Messages sent from this node are stored by the sending path; skip their echo. Echoes of
+        // messages sent from other nodes are skipped by the batch writer's stanza id check.
+        if (sentStanzaTracker.wasSentHere(inbound.getStanzaId())) {
+            log.debug("Skipping echo of message {} from {} to {}",
+                inbound.getStanzaId(), inbound.getFromPlateNumber(), inbound.getToPlateNumber());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Message message = Message.builder()
+                .fromPlateNumber(inbound.getFromPlateNumber())
+                .toPlateNumber(inbound.getToPlateNumber())
+                .messageContent(inbound.getBody())
+                .messageType("TEXT")
+                .timestamp(inbound.getReceivedAt())
+                .isDelivered(true)
+                .deliveredAt(inbound.getReceivedAt())
+                .xmppMessageId(fitsColumn(inbound.getStanzaId(), MAX_STANZA_ID_LENGTH) ? inbound.getStanzaId() : null)
+                .build();
+
+        return messageBatchWriter.write(message).thenAccept(saved -> {
+            if (saved.getId() == null) {
+                log.debug("Skipping echo of message {} from {} to {}, already stored",
+                    saved.getXmppMessageId(), saved.getFromPlateNumber(), saved.getToPlateNumber());
+                return;
+            }
+            // Broadcast to WebSocket subscribers
+            MessageResponse response = messageService.mapToResponse(saved);
+            messagingTemplate.convertAndSend("/topic/messages/" + saved.getToPlateNumber(), response);
+
+            log.info("Message processed and broadcasted from {} to {}", saved.getFromPlateNumber(), saved.getToPlateNumber());
+        });
+    }
+
+    private static boolean isStorable(InboundMessage inbound) {
+        return isPlate(inbound.getFromPlateNumber())
+                && isPlate(inbound.getToPlateNumber())
+                && inbound.getBody() != null && !inbound.getBody().isBlank()
+                // PostgreSQL text cannot hold NUL
+                && inbound.getBody().indexOf('\u0000') < 0;
+    }
+
+    private static boolean isPlate(String plate) {
+        return plate != null && !plate.isBlank() && fitsColumn(plate, MAX_PLATE_LENGTH);
+    }
+
+    private static boolean fitsColumn(String value, int length) {
+        return value != null && value.length() <= length;
+    }
+}
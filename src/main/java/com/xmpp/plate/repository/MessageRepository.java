@@ -1,26 +1,163 @@
 package com.xmpp.plate.repository;
 
 import com.xmpp.plate.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+/**
+ * Keyset queries repeat their timestamp bound as a plain comparison next to the (timestamp, id)
+ * row comparison; the planner can prune time partitions of messages only on the former.
+ */
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
+
+    Optional<Message> findFirstByFromPlateNumberAndToPlateNumberAndXmppMessageId(
+            String fromPlateNumber, String toPlateNumber, String xmppMessageId);
+
+    /**
+     * Messages sent or received by a plate strictly older than (timestamp, id), newest first
+     * Each branch is a range scan on its own (plate, timestamp, id) index, so no OR filter or full sort is needed.
+     */
+    @Query(value = "SELECT * FROM ("
+            + "(SELECT * FROM messages m WHERE m.from_plate_number = :plate"
+            + " AND m.timestamp <= :timestamp AND (m.timestamp, m.id) < (:timestamp, :id) ORDER BY m.timestamp DESC, m.id DESC LIMIT :limit)"
+            + " UNION ALL "
+            + "(SELECT * FROM messages m WHERE m.to_plate_number = :plate AND m.from_plate_number <> :plate"
+            + " AND m.timestamp <= :timestamp AND (m.timestamp, m.id) < (:timestamp, :id) ORDER BY m.timestamp DESC, m.id DESC LIMIT :limit)"
+            + ") page ORDER BY page.timestamp DESC, page.id DESC LIMIT :limit", nativeQuery = true)
+    List<Message> findHistoryBefore(@Param("plate") String plate, @Param("timestamp") LocalDateTime timestamp,
+                                    @Param("id") long id, @Param("limit") int limit);
+
+    /**
+     * Messages sent or received by a plate strictly newer than (timestamp, id), oldest first
+     */
+    @Query(value = "SELECT * FROM ("
+            + "(SELECT * FROM messages m WHERE m.from_plate_number = :plate"
+            + " AND m.timestamp >= :timestamp AND (m.timestamp, m.id) > (:timestamp, :id) ORDER BY m.timestamp ASC, m.id ASC LIMIT :limit)"
+            + " UNION ALL "
+            + "(SELECT * FROM messages m WHERE m.to_plate_number = :plate AND m.from_plate_number <> :plate"
+            + " AND m.timestamp >= :timestamp AND (m.timestamp, m.id) > (:timestamp, :id) ORDER BY m.timestamp ASC, m.id ASC LIMIT :limit)"
+            + ") page ORDER BY page.timestamp ASC, page.id ASC LIMIT :limit", nativeQuery = true)
+    List<Message> findHistoryAfter(@Param("plate") String plate, @Param("timestamp") LocalDateTime timestamp,
+                                   @Param("id") long id, @Param("limit") int limit);
+
+    /**
+     * Messages in a conversation strictly older than (timestamp, id), newest first
+     * A single range scan on idx_conversation_key_timestamp.
+     */
+    @Query(value = "SELECT * FROM messages m WHERE m.conversation_key = :conversationKey"
+            + " AND m.timestamp <= :timestamp AND (m.timestamp, m.id) < (:timestamp, :id)"
+            + " ORDER BY m.timestamp DESC, m.id DESC LIMIT :limit", nativeQuery = true)
+    List<Message> findConversationBefore(@Param("conversationKey") String conversationKey,
+                                         @Param("timestamp") LocalDateTime timestamp,
+                                         @Param("id") long id, @Param("limit") int limit);
+
+    /**
+     * Messages in a conversation strictly newer than (timestamp, id), oldest first
+     */
+    @Query(value = "SELECT * FROM messages m WHERE m.conversation_key = :conversationKey"
+            + " AND m.timestamp >= :timestamp AND (m.timestamp, m.id) > (:timestamp, :id)"
+            + " ORDER BY m.timestamp ASC, m.id ASC LIMIT :limit", nativeQuery = true)
+    List<Message> findConversationAfter(@Param("conversationKey") String conversationKey,
+                                        @Param("timestamp") LocalDateTime timestamp,
+                                        @Param("id") long id, @Param("limit") int limit);
+
+    /**
+     * Messages between two plates strictly older than (timestamp, id), newest first
+     * Matches on the plate columns; used only until conversation keys have been backfilled.
+     */
+    @Query(value = "SELECT * FROM ("
+            + "(SELECT * FROM messages m WHERE m.from_plate_number = :plate1 AND m.to_plate_number = :plate2"
+            + " AND m.timestamp <= :timestamp AND (m.timestamp, m.id) < (:timestamp, :id) ORDER BY m.timestamp DESC, m.id DESC LIMIT :limit)"
+            + " UNION ALL "
+            + "(SELECT * FROM messages m WHERE m.from_plate_number = :plate2 AND m.to_plate_number = :plate1"
+            + " AND m.from_plate_number <> m.to_plate_number"
+            + " AND m.timestamp <= :timestamp AND (m.timestamp, m.id) < (:timestamp, :id) ORDER BY m.timestamp DESC, m.id DESC LIMIT :limit)"
+            + ") page ORDER BY page.timestamp DESC, page.id DESC LIMIT :limit", nativeQuery = true)
+    List<Message> findConversationByPlatesBefore(@Param("plate1") String plate1, @Param("plate2") String plate2,
+                                                 @Param("timestamp") LocalDateTime timestamp,
+                                                 @Param("id") long id, @Param("limit") int limit);
+
+    /**
+     * Messages between two plates strictly newer than (timestamp, id), oldest first
+     */
+    @Query(value = "SELECT * FROM ("
+            + "(SELECT * FROM messages m WHERE m.from_plate_number = :plate1 AND m.to_plate_number = :plate2"
+            + " AND m.timestamp >= :timestamp AND (m.timestamp, m.id) > (:timestamp, :id) ORDER BY m.timestamp ASC, m.id ASC LIMIT :limit)"
+            + " UNION ALL "
+            + "(SELECT * FROM messages m WHERE m.from_plate_number = :plate2 AND m.to_plate_number = :plate1"
+            + " AND m.from_plate_number <> m.to_plate_number"
+            + " AND m.timestamp >= :timestamp AND (m.timestamp, m.id) > (:timestamp, :id) ORDER BY m.timestamp ASC, m.id ASC LIMIT :limit)"
+            + ") page ORDER BY page.timestamp ASC, page.id ASC LIMIT :limit", nativeQuery = true)
+    List<Message> findConversationByPlatesAfter(@Param("plate1") String plate1, @Param("plate2") String plate2,
+                                                @Param("timestamp") LocalDateTime timestamp,
+                                                @Param("id") long id, @Param("limit") int limit);
     
-    List<Message> findByFromPlateNumberOrToPlateNumberOrderByTimestampDesc(
-        String fromPlateNumber, String toPlateNumber
-    );
-    
-    List<Message> findByFromPlateNumberAndToPlateNumberOrToPlateNumberAndFromPlateNumberOrderByTimestampAsc(
-        String fromPlate1, String toPlate1, String fromPlate2, String toPlate2
-    );
-    
+    /**
+     * Fills in conversation_key for rows with ids in (:afterId, :upToId] written before the column existed
+     * @return the number of rows updated
+     */
+    @Modifying
+    @Query(value = "UPDATE messages SET conversation_key = CASE"
+            + " WHEN from_plate_number COLLATE \"C\" <= to_plate_number COLLATE \"C\""
+            + " THEN from_plate_number || '|' || to_plate_number"
+            + " ELSE to_plate_number || '|' || from_plate_number END"
+            + " WHERE id > :afterId AND id <= :upToId AND conversation_key IS NULL", nativeQuery = true)
+    int backfillConversationKeys(@Param("afterId") long afterId, @Param("upToId") long upToId);
+
+    /**
+     * Id of the :limit-th message after :afterId in id order, or the last one if fewer follow; null if none do
+     */
+    @Query(value = "SELECT max(id) FROM (SELECT id FROM messages WHERE id > :afterId ORDER BY id LIMIT :limit) batch",
+            nativeQuery = true)
+    Long findBatchEndId(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * Messages older than the cutoff that come after (timestamp, id), oldest first; the archiver's next batch
+     */
+    @Query(value = "SELECT * FROM messages m WHERE m.timestamp < :cutoff"
+            + " AND m.timestamp >= :timestamp AND (m.timestamp, m.id) > (:timestamp, :id)"
+            + " ORDER BY m.timestamp ASC, m.id ASC LIMIT :limit", nativeQuery = true)
+    List<Message> findArchivable(@Param("cutoff") LocalDateTime cutoff, @Param("timestamp") LocalDateTime timestamp,
+                                 @Param("id") long id, @Param("limit") int limit);
+
+    /**
+     * Marks one message read unless it already is
+     * The message's timestamp limits the update to the partition holding it.
+     * @return 1 if the message changed, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE Message m SET m.isRead = true, m.readAt = :readAt"
+            + " WHERE m.id = :id AND m.timestamp = :timestamp AND m.isRead = false")
+    int markReadIfUnread(@Param("id") Long id, @Param("timestamp") LocalDateTime timestamp,
+                         @Param("readAt") LocalDateTime readAt);
+
+    /**
+     * Marks every unread message from sender to reader at or before (timestamp, id) as read
+     * A range scan on idx_to_plate_timestamp, filtered by sender.
+     * @return the number of messages that changed
+     */
+    @Modifying
+    @Query(value = "UPDATE messages SET is_read = true, read_at = :readAt"
+            + " WHERE to_plate_number = :reader AND from_plate_number = :sender AND is_read = false"
+            + " AND timestamp <= :timestamp AND (timestamp, id) <= (:timestamp, :id)", nativeQuery = true)
+    int markConversationReadUpTo(@Param("reader") String reader, @Param("sender") String sender,
+                                 @Param("timestamp") LocalDateTime timestamp, @Param("id") long id,
+                                 @Param("readAt") LocalDateTime readAt);
+
     List<Message> findByToPlateNumberAndIsReadFalse(String toPlateNumber);
     
     long countByToPlateNumberAndIsReadFalse(String toPlateNumber);
     
     List<Message> findByTimestampBetween(LocalDateTime start, LocalDateTime end);
+
+    List<Message> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 }
@@ -0,0 +1,23 @@
+package com.xmpp.plate.repository;
+
+import com.xmpp.plate.entity.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+    
+    /**
+     * Locks due entries, skipping rows already claimed by another dispatcher
+     */
+    @Query(value = "SELECT * FROM message_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxMessage> findDueForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    long countByStatus(String status);
+}
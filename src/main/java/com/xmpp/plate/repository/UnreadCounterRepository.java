@@ -0,0 +1,35 @@
+package com.xmpp.plate.repository;
+
+import com.xmpp.plate.entity.UnreadCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, Long> {
+
+    /**
+     * Holds back concurrent deltas while the counters are rebuilt, until the transaction ends
+     */
+    @Modifying
+    @Query(value = "LOCK TABLE unread_counters IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    /**
+     * Recomputes every counter from the unread rows of the messages table; the table must be empty
+     */
+    @Modifying
+    @Query(value = "INSERT INTO unread_counters (plate_number, peer_plate_number, unread_count)"
+            + " SELECT to_plate_number, from_plate_number, COUNT(*) FROM messages"
+            + " WHERE is_read = false GROUP BY to_plate_number, from_plate_number", nativeQuery = true)
+    int insertFromMessages();
+
+    @Query("SELECT COALESCE(SUM(c.unreadCount), 0) FROM UnreadCounter c WHERE c.plateNumber = :plate")
+    long sumByPlateNumber(@Param("plate") String plate);
+
+    List<UnreadCounter> findByPlateNumberAndUnreadCountGreaterThan(String plateNumber, long unreadCount);
+}
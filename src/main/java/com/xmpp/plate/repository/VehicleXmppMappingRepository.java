@@ -2,8 +2,12 @@ package com.xmpp.plate.repository;
 
 import com.xmpp.plate.entity.VehicleXmppMapping;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -18,4 +22,7 @@ public interface VehicleXmppMappingRepository extends JpaRepository<VehicleXmppM
     boolean existsByPlateNumber(String plateNumber);
     
     void deleteByPlateNumber(String plateNumber);
+    
+    @Query("SELECT v.plateNumber FROM VehicleXmppMapping v WHERE v.plateNumber IN :plateNumbers")
+    List<String> findPlateNumbersIn(@Param("plateNumbers") Collection<String> plateNumbers);
 }
@@ -1,159 +1,226 @@
 package com.xmpp.plate.service;
 
-import com.xmpp.plate.config.XmppConnectionManager;
+import com.xmpp.plate.config.ChatStateProperties;
 import com.xmpp.plate.dto.ChatStateRequest;
+import com.xmpp.plate.dto.CoalescingStats;
+import com.xmpp.plate.dto.SerialExecutorStats;
+import com.xmpp.plate.dto.TimerStats;
 import com.xmpp.plate.entity.ChatState;
-import com.xmpp.plate.repository.ChatStateRepository;
+import com.xmpp.plate.transport.XmppTransport;
+import com.xmpp.plate.util.DeadlineTimerWheel;
+import com.xmpp.plate.util.SerialExecutor;
+import com.xmpp.plate.util.StateCoalescer;
 import lombok.extern.slf4j.Slf4j;
-import org.jivesoftware.smack.tcp.XMPPTCPConnection;
-import org.jivesoftware.smackx.chatstates.ChatStateManager;
-import org.jxmpp.jid.EntityBareJid;
-import org.jxmpp.jid.impl.JidCreate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service for handling chat states (typing indicators)
- * Implements debouncing for PAUSED state
+ * Implements debouncing for PAUSED state and coalesces repeated or rapid-fire states.
+ * Every event for a (plate, peer) pair, including timer-driven PAUSED and deferred states,
+ * runs on that pair's serial queue, so a later state can never overtake an earlier one. Queues are
+ * drained on virtual threads when they are enabled, otherwise on a pool sized for blocking XMPP sends.
  */
 @Service
 @Slf4j
 public class ChatStateService {
 
     @Autowired
-    private ChatStateRepository chatStateRepository;
+    private ChatStateStore chatStateStore;
 
     @Autowired
     private VehicleService vehicleService;
 
     @Autowired
-    private XmppConnectionManager connectionManager;
+    private XmppTransport xmppTransport;
 
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
-    @Value("${xmpp.domain}")
-    private String xmppDomain;
+    @Autowired
+    private ChatStateProperties chatStateProperties;
+
+    @Autowired
+    private Environment environment;
 
     @Value("${typing.indicator.debounce.seconds:3}")
     private int debounceSeconds;
 
-    // Debounce scheduler
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-
-    // Track pending debounce tasks: plateNumber_chatWithPlate -> ScheduledFuture
-    private final Map<String, java.util.concurrent.ScheduledFuture<?>> pendingTasks = new ConcurrentHashMap<>();
+    // One PAUSED deadline per (plate, peer); repeated COMPOSING only pushes it back
+    private DeadlineTimerWheel<ChatStateStore.Key> pausedTimers;
+
+    // Drops repeats and rate-limits changes before anything is sent
+    private StateCoalescer<ChatStateStore.Key> coalescer;
+
+    // Orders events per (plate, peer) while different pairs run in parallel
+    private SerialExecutor<ChatStateStore.Key> conversations;
+
+    // Platform threads draining the conversation queues; null with virtual threads
+    private ExecutorService workerPool;
+
+    @PostConstruct
+    public void init() {
+        ChatStateProperties.Debounce debounce = chatStateProperties.getDebounce();
+        pausedTimers = new DeadlineTimerWheel<>("chat-state-paused",
+            debounce.getTick(), debounce.getWheelSize(), this::sendPaused);
+        coalescer = new StateCoalescer<>("chat-state",
+            chatStateProperties.getCoalesce().getRefreshInterval(),
+            chatStateProperties.getCoalesce().getMinInterval(),
+            debounce.getTick(), debounce.getWheelSize(), this::forwardDeferred);
+        ChatStateProperties.Executor config = chatStateProperties.getExecutor();
+        Executor executor;
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor virtualExecutor = new SimpleAsyncTaskExecutor("chat-state-");
+            virtualExecutor.setVirtualThreads(true);
+            executor = virtualExecutor;
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            workerPool = Executors.newFixedThreadPool(Math.max(1, config.getThreads()), runnable -> {
+                Thread thread = new Thread(runnable, "chat-state-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor = workerPool;
+        }
+        conversations = new SerialExecutor<>("chat-state", executor, config.getQueueCapacity());
+    }
 
     /**
-     * Updates chat state with debouncing for COMPOSING->PAUSED transition
+     * Queues a chat state behind earlier states of the same conversation
+     * Called on STOMP inbound threads; never waits, a full conversation queue drops the state.
      */
-    @Transactional
-    @Async
     public void updateChatState(ChatStateRequest request) {
+        ChatStateStore.Key key = new ChatStateStore.Key(request.getPlateNumber(), request.getChatWithPlate());
+        if (!conversations.execute(key, () -> applyChatState(key, request))) {
+            log.warn("Chat state queue full, dropped {} from {} to {}",
+                request.getState(), request.getPlateNumber(), request.getChatWithPlate());
+        }
+    }
+
+    /**
+     * Applies a chat state with debouncing for COMPOSING->PAUSED transition; runs on the pair's queue
+     */
+    private void applyChatState(ChatStateStore.Key key, ChatStateRequest request) {
         log.debug("Updating chat state: {} from {} to {}", 
             request.getState(), request.getPlateNumber(), request.getChatWithPlate());
 
         try {
-            // Validate both vehicles exist
-            vehicleService.getVehicle(request.getPlateNumber());
-            vehicleService.getVehicle(request.getChatWithPlate());
-
-            String key = request.getPlateNumber() + "_" + request.getChatWithPlate();
+            // Pairs that already forwarded a state have been validated
+            if (!coalescer.isKnown(key)) {
+                vehicleService.getVehicle(request.getPlateNumber());
+                vehicleService.getVehicle(request.getChatWithPlate());
+            }
 
-            // Handle COMPOSING state
             if ("COMPOSING".equals(request.getState())) {
-                // Cancel any pending PAUSED task
-                java.util.concurrent.ScheduledFuture<?> pendingTask = pendingTasks.get(key);
-                if (pendingTask != null && !pendingTask.isDone()) {
-                    pendingTask.cancel(false);
-                }
+                // Every COMPOSING, forwarded or not, pushes PAUSED back by the debounce period
+                pausedTimers.touch(key, TimeUnit.SECONDS.toMillis(debounceSeconds));
+            } else {
+                // Any other state (ACTIVE, PAUSED, INACTIVE, GONE) ends composing
+                pausedTimers.cancel(key);
+            }
 
-                // Send COMPOSING state immediately
+            if (coalescer.offer(key, request.getState()) == StateCoalescer.Decision.FORWARD) {
                 sendChatState(request);
                 saveChatState(request);
+            }
+
+        } catch (Exception e) {
+            log.error("Failed to update chat state", e);
+        }
+    }
 
-                // Schedule PAUSED state after debounce period
-                java.util.concurrent.ScheduledFuture<?> task = scheduler.schedule(() -> {
-                    ChatStateRequest pausedRequest = ChatStateRequest.builder()
-                            .plateNumber(request.getPlateNumber())
-                            .chatWithPlate(request.getChatWithPlate())
-                            .state("PAUSED")
-                            .build();
-                    sendChatState(pausedRequest);
-                    saveChatState(pausedRequest);
-                }, debounceSeconds, TimeUnit.SECONDS);
+    /**
+     * Gets PAUSED debounce timer statistics
+     */
+    public TimerStats getDebounceStats() {
+        return pausedTimers.getStats();
+    }
 
-                pendingTasks.put(key, task);
+    /**
+     * Gets counts of forwarded, suppressed and rate-limited chat states
+     */
+    public CoalescingStats getCoalescingStats() {
+        return coalescer.getStats();
+    }
 
-            } else {
-                // For other states (ACTIVE, PAUSED, INACTIVE, GONE), send immediately
-                sendChatState(request);
-                saveChatState(request);
+    /**
+     * Gets queue depth and task counts of the chat-state executor
+     */
+    public SerialExecutorStats getExecutorStats() {
+        return conversations.getStats();
+    }
+
+    /**
+     * Forgets pairs that have been quiet for longer than the store keeps their state
+     */
+    @Scheduled(fixedDelayString = "${chat-state.store.flush-interval:1000}")
+    public void evictIdlePairs() {
+        coalescer.evictIdle(chatStateProperties.getStore().getTtl());
+    }
 
-                // Cancel any pending tasks
-                java.util.concurrent.ScheduledFuture<?> pendingTask = pendingTasks.get(key);
-                if (pendingTask != null && !pendingTask.isDone()) {
-                    pendingTask.cancel(false);
-                    pendingTasks.remove(key);
-                }
+    /**
+     * Runs on the timer wheel thread when a plate stops composing
+     */
+    private void sendPaused(ChatStateStore.Key key) {
+        boolean queued = conversations.execute(key, () -> {
+            if (coalescer.offer(key, "PAUSED") == StateCoalescer.Decision.FORWARD) {
+                forward(key, "PAUSED");
             }
+        });
+        if (!queued) {
+            log.warn("Chat state queue full, dropped PAUSED from {} to {}", key.getPlateNumber(), key.getChatWithPlate());
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to update chat state", e);
+    /**
+     * Runs on the coalescer's timer thread when a held-back state is released
+     */
+    private void forwardDeferred(ChatStateStore.Key key, String state) {
+        if (!conversations.execute(key, () -> forward(key, state))) {
+            log.warn("Chat state queue full, dropped deferred {} from {} to {}",
+                state, key.getPlateNumber(), key.getChatWithPlate());
         }
     }
 
+    /**
+     * Sends and records a state the coalescer let through
+     */
+    private void forward(ChatStateStore.Key key, String state) {
+        ChatStateRequest request = ChatStateRequest.builder()
+                .plateNumber(key.getPlateNumber())
+                .chatWithPlate(key.getChatWithPlate())
+                .state(state)
+                .build();
+        sendChatState(request);
+        saveChatState(request);
+    }
+
     /**
      * Sends chat state via XMPP
      */
     private void sendChatState(ChatStateRequest request) {
         try {
-            // Get XMPP password
-            String password = vehicleService.getXmppPassword(request.getPlateNumber());
-
-            // Get XMPP connection
-            XMPPTCPConnection connection = connectionManager.getConnection(
-                request.getPlateNumber(), 
-                password
-            );
-
-            // Create recipient JID
-            EntityBareJid recipientJid = JidCreate.entityBareFrom(
-                request.getChatWithPlate() + "@" + xmppDomain
-            );
-
-            // Get chat state manager
-            ChatStateManager chatStateManager = ChatStateManager.getInstance(connection);
-
             // Map and send chat state
             org.jivesoftware.smackx.chatstates.ChatState xmppState = 
                 mapToXmppChatState(request.getState());
 
             if (xmppState != null) {
-                // Create a message with chat state
-                org.jivesoftware.smack.packet.Message message = 
-                    connection.getStanzaFactory()
-                        .buildMessageStanza()
-                        .to(recipientJid)
-                        .build();
-                
-                // Set chat state on the message
-                message.addExtension(new org.jivesoftware.smackx.chatstates.packet.ChatStateExtension(xmppState));
-                
-                // Send the message with chat state
-                connection.sendStanza(message);
+                // Send over the configured XMPP transport
+                xmppTransport.sendChatState(request.getPlateNumber(), request.getChatWithPlate(), xmppState);
                 
                 log.debug("Sent XMPP chat state {} from {} to {}", 
                     request.getState(), request.getPlateNumber(), request.getChatWithPlate());
@@ -171,33 +238,17 @@ public class ChatStateService {
     }
 
     /**
-     * Saves chat state to database
+     * Records chat state in the in-memory store; it reaches the database on the next flush
      */
     private void saveChatState(ChatStateRequest request) {
-        try {
-            ChatState chatState = chatStateRepository
-                    .findByPlateNumberAndChatWithPlate(request.getPlateNumber(), request.getChatWithPlate())
-                    .orElse(new ChatState());
-
-            chatState.setPlateNumber(request.getPlateNumber());
-            chatState.setChatWithPlate(request.getChatWithPlate());
-            chatState.setState(request.getState());
-            chatState.setTimestamp(LocalDateTime.now());
-
-            chatStateRepository.save(chatState);
-
-        } catch (Exception e) {
-            log.error("Failed to save chat state to database", e);
-        }
+        chatStateStore.put(request.getPlateNumber(), request.getChatWithPlate(), request.getState());
     }
 
     /**
      * Gets current chat state
      */
     public ChatState getCurrentState(String plateNumber, String chatWithPlate) {
-        return chatStateRepository
-                .findByPlateNumberAndChatWithPlate(plateNumber, chatWithPlate)
-                .orElse(null);
+        return chatStateStore.get(plateNumber, chatWithPlate);
     }
 
     /**
@@ -216,31 +267,17 @@ public class ChatStateService {
 
     /**
      * Cleanup method called on application shutdown
-     * Cancels all pending tasks and shuts down the scheduler
+     * Drops pending PAUSED timers and stops the timer wheel
      */
     @PreDestroy
     public void cleanup() {
-        log.info("Shutting down ChatStateService scheduler");
-        
-        // Cancel all pending tasks
-        pendingTasks.values().forEach(task -> {
-            if (!task.isDone()) {
-                task.cancel(false);
-            }
-        });
-        pendingTasks.clear();
-        
-        // Shutdown scheduler
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
+        log.info("Shutting down ChatStateService debounce timers ({}, {})",
+            pausedTimers.getStats(), coalescer.getStats());
+        pausedTimers.stop();
+        coalescer.stop();
+        conversations.stop();
+        if (workerPool != null) {
+            workerPool.shutdown();
         }
-        
-        log.info("ChatStateService scheduler shut down successfully");
     }
 }
@@ -0,0 +1,192 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.config.ChatStateProperties;
+import com.xmpp.plate.entity.ChatState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory table of current chat states, written behind to chat_states
+ * Reads and writes never touch the database; only the latest state per (plate, peer)
+ * is flushed on each interval with one batched upsert. Stale and GONE states expire.
+ */
+// Hibernate creates chat_states first on a fresh database
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class ChatStateStore {
+
+    private static final String UPSERT_SQL = "INSERT INTO chat_states (plate_number, chat_with_plate, state, timestamp)"
+            + " VALUES (?, ?, ?, ?)"
+            + " ON CONFLICT (plate_number, chat_with_plate)"
+            + " DO UPDATE SET state = EXCLUDED.state, timestamp = EXCLUDED.timestamp"
+            + " WHERE chat_states.timestamp <= EXCLUDED.timestamp";
+
+    // Only removes the row if no newer state has been flushed since it expired
+    private static final String DELETE_SQL = "DELETE FROM chat_states"
+            + " WHERE plate_number = ? AND chat_with_plate = ? AND timestamp <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChatStateProperties chatStateProperties;
+
+    private final Map<Key, Entry> states = new ConcurrentHashMap<>();
+
+    // Keys changed since the last flush
+    private final Set<Key> dirty = ConcurrentHashMap.newKeySet();
+
+    // Expired entries whose rows are removed on the next flush
+    private final Map<Key, Entry> expired = new ConcurrentHashMap<>();
+
+    /**
+     * Prepares chat_states for upserts and loads states that have not yet expired
+     */
+    @PostConstruct
+    public void init() {
+        // Older versions could store duplicate rows; keep the newest before enforcing uniqueness
+        jdbcTemplate.update("DELETE FROM chat_states a USING chat_states b"
+                + " WHERE a.plate_number = b.plate_number AND a.chat_with_plate = b.chat_with_plate"
+                + " AND (a.timestamp, a.id) < (b.timestamp, b.id)");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_chat_state_plate_peer"
+                + " ON chat_states (plate_number, chat_with_plate)");
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(chatStateProperties.getStore().getTtl()));
+        jdbcTemplate.query("SELECT plate_number, chat_with_plate, state, timestamp FROM chat_states WHERE timestamp > ?",
+            rs -> {
+                states.put(new Key(rs.getString("plate_number"), rs.getString("chat_with_plate")),
+                    new Entry(rs.getString("state"), rs.getTimestamp("timestamp").toLocalDateTime()));
+            }, Timestamp.valueOf(cutoff));
+        log.info("Loaded {} chat states", states.size());
+    }
+
+    /**
+     * Records the current state of a plate towards a peer
+     */
+    public void put(String plateNumber, String chatWithPlate, String state) {
+        Key key = new Key(plateNumber, chatWithPlate);
+        states.put(key, new Entry(state, LocalDateTime.now()));
+        dirty.add(key);
+    }
+
+    /**
+     * Gets the current state, or null if there is none or it has expired
+     */
+    public ChatState get(String plateNumber, String chatWithPlate) {
+        Entry entry = states.get(new Key(plateNumber, chatWithPlate));
+        if (entry == null || isExpired(entry, LocalDateTime.now())) {
+            return null;
+        }
+        return ChatState.builder()
+                .plateNumber(plateNumber)
+                .chatWithPlate(chatWithPlate)
+                .state(entry.getState())
+                .timestamp(entry.getTimestamp())
+                .build();
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Drops expired states, then writes every changed state in one batch
+     */
+    @Scheduled(fixedDelayString = "${chat-state.store.flush-interval:1000}")
+    public void flush() {
+        expire();
+
+        if (!expired.isEmpty()) {
+            Map<Key, Entry> removed = new HashMap<>();
+            for (Iterator<Map.Entry<Key, Entry>> it = expired.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Key, Entry> next = it.next();
+                it.remove();
+                removed.put(next.getKey(), next.getValue());
+            }
+            List<Object[]> deletes = new ArrayList<>();
+            removed.forEach((key, entry) -> deletes.add(new Object[] {key.getPlateNumber(), key.getChatWithPlate(),
+                Timestamp.valueOf(entry.getTimestamp())}));
+            try {
+                jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+            } catch (Exception e) {
+                log.error("Failed to delete {} expired chat states, retrying on next flush", deletes.size(), e);
+                // An entry that expired again meanwhile is newer and already covers this delete
+                removed.forEach(expired::putIfAbsent);
+            }
+        }
+
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Object[]> upserts = new ArrayList<>();
+        for (Iterator<Key> it = dirty.iterator(); it.hasNext(); ) {
+            // A put racing with this removal marks the key dirty again for the next flush
+            Key key = it.next();
+            it.remove();
+            Entry entry = states.get(key);
+            if (entry != null) {
+                upserts.add(new Object[] {key.getPlateNumber(), key.getChatWithPlate(),
+                    entry.getState(), Timestamp.valueOf(entry.getTimestamp())});
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+            log.debug("Flushed {} chat states", upserts.size());
+        } catch (Exception e) {
+            log.error("Failed to flush {} chat states, retrying on next flush", upserts.size(), e);
+            upserts.forEach(row -> dirty.add(new Key((String) row[0], (String) row[1])));
+        }
+    }
+
+    private void expire() {
+        LocalDateTime now = LocalDateTime.now();
+        states.forEach((key, entry) -> {
+            if (isExpired(entry, now) && states.remove(key, entry)) {
+                expired.put(key, entry);
+            }
+        });
+    }
+
+    private boolean isExpired(Entry entry, LocalDateTime now) {
+        long ttl = "GONE".equals(entry.getState())
+                ? chatStateProperties.getStore().getGoneTtl()
+                : chatStateProperties.getStore().getTtl();
+        return entry.getTimestamp().plus(Duration.ofMillis(ttl)).isBefore(now);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    @Value
+    public static class Key {
+        String plateNumber;
+        String chatWithPlate;
+    }
+
+    @Value
+    private static class Entry {
+        String state;
+        LocalDateTime timestamp;
+    }
+}
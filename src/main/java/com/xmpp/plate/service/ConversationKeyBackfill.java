@@ -0,0 +1,93 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Fills in conversation_key for messages stored before the column existed
+ * Walks the table in id order in small batches in the background, keeping the last id walked in
+ * conversation_key_backfill so nodes share the walk and a restart resumes it. The backfill is
+ * complete once no message follows that id; until then conversation lookups fall back to
+ * matching on the plate columns.
+ */
+@Component
+@Slf4j
+public class ConversationKeyBackfill {
+
+    // Locked for the length of one batch; a node that finds it locked leaves the batch to its holder
+    private static final String LOCK_WATERMARK_SQL =
+            "SELECT backfilled_up_to FROM conversation_key_backfill WHERE id = 1 FOR UPDATE SKIP LOCKED";
+
+    private static final String UPDATE_WATERMARK_SQL =
+            "UPDATE conversation_key_backfill SET backfilled_up_to = ? WHERE id = 1";
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private volatile boolean complete;
+
+    private long backfilled;
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS conversation_key_backfill"
+                + " (id INT PRIMARY KEY, backfilled_up_to BIGINT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO conversation_key_backfill (id, backfilled_up_to) VALUES (1, 0) ON CONFLICT DO NOTHING");
+    }
+
+    /**
+     * Updates one id range per run so the shared scheduler thread is never held for long
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${messaging.conversation-key.backfill-interval:100}")
+    public void backfill() {
+        if (complete) {
+            return;
+        }
+        int batchSize = messagingProperties.getConversationKey().getBackfillBatchSize();
+        Long walkedUpTo = transactionTemplate.execute(status -> {
+            List<Long> watermark = jdbcTemplate.queryForList(LOCK_WATERMARK_SQL, Long.class);
+            if (watermark.isEmpty()) {
+                return null;
+            }
+            long after = watermark.get(0);
+            Long upTo = messageRepository.findBatchEndId(after, batchSize);
+            if (upTo == null) {
+                // No message follows the watermark, so none is left without a key
+                complete = true;
+                return after;
+            }
+            backfilled += messageRepository.backfillConversationKeys(after, upTo);
+            jdbcTemplate.update(UPDATE_WATERMARK_SQL, upTo);
+            return upTo;
+        });
+
+        if (complete) {
+            log.info("Conversation key backfill complete up to message {} ({} messages updated on this node)",
+                    walkedUpTo, backfilled);
+        } else if (walkedUpTo != null) {
+            log.debug("Conversation key backfill at message {}: {} messages updated", walkedUpTo, backfilled);
+        }
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,187 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.dto.ArchiveStats;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.util.ArchiveSegment;
+import com.xmpp.plate.util.MessageCursor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Read side of the cold-storage archive: the segment files under messaging.archive.directory
+ * Segments cover consecutive, non-overlapping (timestamp, id) ranges, so a lookup walks them
+ * in order from the cursor and stops as soon as it has enough messages.
+ * Segments written by the archiving node are picked up by the others before history reads, when
+ * the directory has changed, and on a schedule.
+ */
+@Component
+@Slf4j
+public class MessageArchive {
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    // Ordered oldest first; replaced wholesale when a segment is added
+    private volatile List<ArchiveSegment> segments = List.of();
+
+    private Path directory;
+
+    // Modification time of the directory when its files were last listed
+    private volatile FileTime listedAt;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!messagingProperties.getArchive().isEnabled()) {
+            return;
+        }
+        directory = Paths.get(messagingProperties.getArchive().getDirectory());
+        Files.createDirectories(directory);
+        refresh();
+        log.info("Message archive at {}: {} segments", directory.toAbsolutePath(), segments.size());
+    }
+
+    /**
+     * Opens segment files not loaded yet, e.g. written by another node sharing the directory
+     */
+    public synchronized void refresh() throws IOException {
+        // Read before listing, so a segment added during the listing triggers another refresh
+        FileTime modified = Files.getLastModifiedTime(directory);
+        List<Path> loaded = segments.stream().map(ArchiveSegment::getPath).collect(Collectors.toList());
+        List<ArchiveSegment> opened = new ArrayList<>(segments);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(ArchiveSegment.EXTENSION)).collect(Collectors.toList())) {
+                if (!loaded.contains(file)) {
+                    opened.add(ArchiveSegment.open(file));
+                }
+            }
+        }
+        if (opened.size() != segments.size()) {
+            opened.sort(Comparator.comparing(ArchiveSegment::getFirst));
+            segments = List.copyOf(opened);
+        }
+        listedAt = modified;
+    }
+
+    /**
+     * Refreshes only if the directory changed since it was last listed; one stat call otherwise
+     * Called before history reads that may reach the archive.
+     */
+    public void refreshIfChanged() {
+        if (directory == null) {
+            return;
+        }
+        try {
+            if (!Files.getLastModifiedTime(directory).equals(listedAt)) {
+                refresh();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to check message archive {} for new segments: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Picks up new segments even where directory modification times are cached, e.g. on network storage
+     */
+    @Scheduled(fixedDelayString = "${messaging.archive.refresh-interval:5000}")
+    public void refreshSegments() {
+        if (directory == null) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (IOException e) {
+            log.error("Failed to refresh message archive {}", directory, e);
+        }
+    }
+
+    public synchronized void add(ArchiveSegment segment) {
+        // A scheduled refresh may already have opened the file
+        if (segments.stream().anyMatch(loaded -> loaded.getPath().equals(segment.getPath()))) {
+            return;
+        }
+        List<ArchiveSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        updated.sort(Comparator.comparing(ArchiveSegment::getFirst));
+        segments = List.copyOf(updated);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Loaded segments, oldest first
+     */
+    public List<ArchiveSegment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * The most recently archived segment, or null if nothing has been archived
+     */
+    public ArchiveSegment getLastSegment() {
+        List<ArchiveSegment> current = segments;
+        return current.isEmpty() ? null : current.get(current.size() - 1);
+    }
+
+    /**
+     * Position of the newest archived message, or null if nothing has been archived
+     */
+    public MessageCursor getNewestArchived() {
+        ArchiveSegment last = getLastSegment();
+        return last == null ? null : last.getLast();
+    }
+
+    public List<Message> findHistory(String plateNumber, MessageCursor cursor, boolean older, int limit) {
+        return find((segment, remaining) -> segment.findByPlate(plateNumber, cursor, older, remaining), cursor, older, limit);
+    }
+
+    public List<Message> findConversation(String conversationKey, MessageCursor cursor, boolean older, int limit) {
+        return find((segment, remaining) -> segment.findByConversation(conversationKey, cursor, older, remaining), cursor, older, limit);
+    }
+
+    public ArchiveStats getStats() {
+        List<ArchiveSegment> current = segments;
+        MessageCursor newest = getNewestArchived();
+        return ArchiveStats.builder()
+                .segments(current.size())
+                .messages(current.stream().mapToLong(ArchiveSegment::getMessageCount).sum())
+                .sizeBytes(current.stream().mapToLong(ArchiveSegment::getSizeBytes).sum())
+                .archivedUpTo(newest == null ? null : newest.getTimestamp())
+                .build();
+    }
+
+    private List<Message> find(BiFunction<ArchiveSegment, Integer, List<Message>> lookup,
+                               MessageCursor cursor, boolean older, int limit) {
+        List<ArchiveSegment> current = segments;
+        List<Message> found = new ArrayList<>();
+        for (int i = 0; i < current.size() && found.size() < limit; i++) {
+            ArchiveSegment segment = current.get(older ? current.size() - 1 - i : i);
+            if (older ? segment.getFirst().compareTo(cursor) >= 0 : segment.getLast().compareTo(cursor) <= 0) {
+                continue;
+            }
+            try {
+                found.addAll(lookup.apply(segment, limit - found.size()));
+            } catch (IllegalStateException e) {
+                log.error("Skipping unreadable archive segment {}", segment.getPath(), e);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,131 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.repository.MessageRepository;
+import com.xmpp.plate.util.ArchiveSegment;
+import com.xmpp.plate.util.MessageCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves messages older than messaging.archive.older-than-days from the messages table into archive segments
+ * Each run writes one segment and deletes its rows in the same transaction, under an advisory
+ * lock so only one node archives at a time. If the delete does not commit, the rows of the
+ * newest segment are deleted again on the next run, so nothing is archived twice.
+ * Nodes that serve archived history must share the archive directory.
+ */
+@Component
+@Slf4j
+public class MessageArchiver {
+
+    private static final long LOCK_KEY = 0x6d73676172636876L;
+
+    // Unread archived messages are taken off the unread counters
+    private static final String DELETE_SQL = "WITH archived AS ("
+            + "DELETE FROM messages WHERE id = ANY(?) AND timestamp BETWEEN ? AND ?"
+            + " RETURNING to_plate_number, from_plate_number, is_read)"
+            + " SELECT to_plate_number, from_plate_number, count(*) AS unread FROM archived WHERE is_read = false"
+            + " GROUP BY to_plate_number, from_plate_number ORDER BY to_plate_number, from_plate_number";
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private UnreadCountService unreadCountService;
+
+    // Newest segment whose rows are known to be gone from the messages table
+    private Path cleanedSegment;
+
+    @Scheduled(initialDelayString = "${messaging.archive.interval:60000}",
+               fixedDelayString = "${messaging.archive.interval:60000}")
+    public void archive() {
+        MessagingProperties.Archive config = messagingProperties.getArchive();
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            Path cleaned = transactionTemplate.execute(status -> {
+                Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(" + LOCK_KEY + ")", Boolean.class);
+                if (!Boolean.TRUE.equals(locked)) {
+                    return cleanedSegment;
+                }
+                try {
+                    messageArchive.refresh();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                // The segment may have been written by a run whose delete never committed
+                ArchiveSegment last = messageArchive.getLastSegment();
+                if (last != null && !last.getPath().equals(cleanedSegment)) {
+                    removeFromMessages(last.readAll());
+                }
+
+                MessageCursor from = last != null ? last.getLast() : MessageCursor.EARLIEST;
+                LocalDateTime cutoff = LocalDateTime.now().minusDays(config.getOlderThanDays());
+                List<Message> batch = messageRepository.findArchivable(cutoff, from.getTimestamp(), from.getId(),
+                    config.getSegmentSize());
+                if (batch.isEmpty()) {
+                    return last != null ? last.getPath() : null;
+                }
+                batch.forEach(message -> {
+                    if (message.getConversationKey() == null) {
+                        message.setConversationKey(Message.conversationKey(message.getFromPlateNumber(), message.getToPlateNumber()));
+                    }
+                });
+
+                ArchiveSegment segment;
+                try {
+                    segment = ArchiveSegment.write(messageArchive.getDirectory(), batch);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                messageArchive.add(segment);
+                removeFromMessages(batch);
+                log.info("Archived {} messages up to {} into {}", batch.size(),
+                    segment.getLast().getTimestamp(), segment.getPath().getFileName());
+                return segment.getPath();
+            });
+            cleanedSegment = cleaned;
+        } catch (Exception e) {
+            log.error("Message archiving failed", e);
+        }
+    }
+
+    private void removeFromMessages(List<Message> archived) {
+        Long[] ids = archived.stream().map(Message::getId).toArray(Long[]::new);
+        Array idArray = jdbcTemplate.execute((ConnectionCallback<Array>) connection -> connection.createArrayOf("bigint", ids));
+        List<Map<String, Object>> unread = jdbcTemplate.queryForList(DELETE_SQL, idArray,
+            Timestamp.valueOf(archived.get(0).getTimestamp()),
+            Timestamp.valueOf(archived.get(archived.size() - 1).getTimestamp()));
+        unread.forEach(row -> unreadCountService.messagesRead((String) row.get("to_plate_number"),
+            (String) row.get("from_plate_number"), ((Number) row.get("unread")).longValue()));
+    }
+}
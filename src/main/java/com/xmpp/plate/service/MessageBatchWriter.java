@@ -0,0 +1,367 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.dto.BatchWriterStats;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.event.MessagesStoredEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Group-commit writer for new messages
+ * Message ids are database identities, so Hibernate cannot batch their inserts. Writes from
+ * concurrent callers are collected here for up to messaging.writer.max-delay or batch-size rows,
+ * given ids from the identity sequence in one query, and inserted with one JDBC batch in one
+ * transaction together with their unread counter deltas. Callers get a future per write.
+ * If a batch fails, each write is retried in its own transaction so one bad row only fails
+ * its own caller.
+ * A message whose sender, recipient and XMPP stanza id are already stored, such as the echo of a
+ * message another node sent, is skipped and keeps a null id. Stanza ids are only unique per
+ * connection, so the id alone is not a key. The keys are claimed in message_stanza_keys rather than
+ * by a unique index on messages, which a table partitioned on timestamp cannot have.
+ */
+// Hibernate creates the messages table first on a fresh database
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class MessageBatchWriter {
+
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('messages', 'id')) FROM generate_series(1, ?)";
+
+    // Returns only the keys not claimed before; duplicates within one call are claimed once
+    private static final String CLAIM_STANZA_KEYS_SQL = "INSERT INTO message_stanza_keys"
+            + " (from_plate_number, to_plate_number, xmpp_message_id, stored_at)"
+            + " SELECT DISTINCT k.from_plate, k.to_plate, k.stanza_id, now()"
+            + " FROM unnest(?::varchar[], ?::varchar[], ?::varchar[]) AS k(from_plate, to_plate, stanza_id)"
+            + " ON CONFLICT DO NOTHING RETURNING from_plate_number, to_plate_number, xmpp_message_id";
+
+    private static final String INSERT_SQL = "INSERT INTO messages (id, from_plate_number, to_plate_number,"
+            + " conversation_key, message_content, message_type, timestamp, is_delivered, is_read,"
+            + " delivered_at, read_at, xmpp_message_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UnreadCountService unreadCountService;
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private BlockingQueue<PendingWrite> queue;
+
+    private Thread flusher;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicInteger largestBatch = new AtomicInteger();
+
+    @PostConstruct
+    public void start() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS message_stanza_keys (from_plate_number VARCHAR(20) NOT NULL,"
+                + " to_plate_number VARCHAR(20) NOT NULL, xmpp_message_id VARCHAR(100) NOT NULL, stored_at TIMESTAMP NOT NULL,"
+                + " PRIMARY KEY (from_plate_number, to_plate_number, xmpp_message_id))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_message_stanza_keys_stored_at ON message_stanza_keys (stored_at)");
+        queue = new ArrayBlockingQueue<>(Math.max(1, messagingProperties.getWriter().getQueueCapacity()));
+        flusher = new Thread(this::run, "message-batch-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues a message for the next batch, waiting for queue space if the writer is behind
+     * Callbacks attached to the future run on the writer thread and should be short.
+     * @return completes with the message once its batch has committed; its id is null if a message
+     *         with the same stanza id was already stored
+     */
+    public CompletableFuture<Message> write(Message message) {
+        return writeAll(List.of(message)).thenApply(stored -> stored.get(0));
+    }
+
+    /**
+     * Queues messages that must be stored together; they always land in the same transaction
+     */
+    public CompletableFuture<List<Message>> writeAll(List<Message> messages) {
+        CompletableFuture<List<Message>> future = new CompletableFuture<>();
+        if (messages.isEmpty()) {
+            future.complete(messages);
+            return future;
+        }
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Message batch writer is stopped"));
+            return future;
+        }
+        try {
+            queue.put(new PendingWrite(messages, future));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public BatchWriterStats getStats() {
+        return BatchWriterStats.builder()
+                .queued(queue.size())
+                .batches(batches.get())
+                .rows(rows.get())
+                .failedRows(failedRows.get())
+                .duplicates(duplicates.get())
+                .largestBatch(largestBatch.get())
+                .build();
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch, first.messages.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds queued writes until the batch is full or the first write has waited max-delay
+     */
+    private void collect(List<PendingWrite> batch, int size) throws InterruptedException {
+        int batchSize = messagingProperties.getWriter().getBatchSize();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(messagingProperties.getWriter().getMaxDelay());
+        while (size < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            size += next.messages.size();
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<Message> messages = new ArrayList<>();
+        batch.forEach(write -> messages.addAll(write.messages));
+
+        try {
+            store(messages);
+        } catch (Exception e) {
+            messages.forEach(message -> message.setId(null));
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+            // Find the offending writes; the others still get stored
+            log.warn("Failed to store batch of {} messages, retrying {} writes one by one: {}",
+                    messages.size(), batch.size(), e.getMessage());
+            batch.forEach(this::flushAlone);
+            return;
+        }
+
+        batches.incrementAndGet();
+        rows.addAndGet(stored(messages));
+        largestBatch.accumulateAndGet(messages.size(), Math::max);
+        log.debug("Stored batch of {} messages from {} writes", messages.size(), batch.size());
+
+        batch.forEach(this::complete);
+    }
+
+    private void flushAlone(PendingWrite write) {
+        try {
+            store(write.messages);
+        } catch (Exception e) {
+            write.messages.forEach(message -> message.setId(null));
+            fail(write, e);
+            return;
+        }
+        batches.incrementAndGet();
+        rows.addAndGet(stored(write.messages));
+        complete(write);
+    }
+
+    private static long stored(List<Message> messages) {
+        return messages.stream().filter(message -> message.getId() != null).count();
+    }
+
+    /**
+     * Inserts the messages and their unread counter deltas in one transaction
+     */
+    private void store(List<Message> messages) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Message> fresh = withoutStoredStanzas(messages);
+            if (fresh.isEmpty()) {
+                return;
+            }
+            List<Long> ids = jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, fresh.size());
+            List<Object[]> args = new ArrayList<>(fresh.size());
+            for (int i = 0; i < fresh.size(); i++) {
+                args.add(toRow(fresh.get(i), ids.get(i)));
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, args);
+            unreadCountService.messagesStored(fresh);
+            eventPublisher.publishEvent(new MessagesStoredEvent(this, fresh));
+        });
+    }
+
+    /**
+     * Claims the messages' stanza keys and drops messages whose key was claimed before
+     */
+    private List<Message> withoutStoredStanzas(List<Message> messages) {
+        Set<List<String>> claimed = claimStanzaKeys(messages);
+        if (claimed == null) {
+            return messages;
+        }
+        List<Message> fresh = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            // remove() lets only the first of two messages with the same key through
+            if (message.getXmppMessageId() == null || claimed.remove(stanzaKey(message))) {
+                fresh.add(message);
+            } else {
+                duplicates.incrementAndGet();
+                log.debug("Skipping message {} from {} to {}, already stored",
+                        message.getXmppMessageId(), message.getFromPlateNumber(), message.getToPlateNumber());
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * Claims the keys of the messages that have a stanza id, in the caller's transaction
+     * Also used for messages stored outside the writer, so their echoes are recognized.
+     * @return the keys newly claimed, or null if no message has a stanza id
+     */
+    Set<List<String>> claimStanzaKeys(List<Message> messages) {
+        List<Message> identified = messages.stream()
+                .filter(message -> message.getXmppMessageId() != null)
+                .collect(Collectors.toList());
+        if (identified.isEmpty()) {
+            return null;
+        }
+        return new HashSet<>(jdbcTemplate.query(CLAIM_STANZA_KEYS_SQL,
+                (rs, rowNum) -> List.of(rs.getString(1), rs.getString(2), rs.getString(3)),
+                identified.stream().map(Message::getFromPlateNumber).toArray(String[]::new),
+                identified.stream().map(Message::getToPlateNumber).toArray(String[]::new),
+                identified.stream().map(Message::getXmppMessageId).toArray(String[]::new)));
+    }
+
+    private static List<String> stanzaKey(Message message) {
+        return List.of(message.getFromPlateNumber(), message.getToPlateNumber(), message.getXmppMessageId());
+    }
+
+    /**
+     * Forgets stanza keys older than dedup-retention; echoes arrive within seconds of the original
+     */
+    @Scheduled(fixedDelayString = "${messaging.writer.dedup-prune-interval:3600000}")
+    public void pruneStanzaKeys() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(messagingProperties.getWriter().getDedupRetention()));
+        int pruned = jdbcTemplate.update("DELETE FROM message_stanza_keys WHERE stored_at < ?", Timestamp.valueOf(cutoff));
+        log.debug("Pruned {} stored stanza keys", pruned);
+    }
+
+    private void complete(PendingWrite write) {
+        try {
+            write.future.complete(write.messages);
+        } catch (RuntimeException e) {
+            log.error("Message write callback failed", e);
+        }
+    }
+
+    private void fail(PendingWrite write, Exception e) {
+        log.error("Failed to store {} messages", write.messages.size(), e);
+        failedRows.addAndGet(write.messages.size());
+        write.future.completeExceptionally(e);
+    }
+
+    /**
+     * Fills in what @PrePersist would set and returns the insert parameters
+     */
+    private Object[] toRow(Message message, long id) {
+        message.setId(id);
+        if (message.getTimestamp() == null) {
+            message.setTimestamp(LocalDateTime.now());
+        }
+        if (message.getConversationKey() == null) {
+            message.setConversationKey(Message.conversationKey(message.getFromPlateNumber(), message.getToPlateNumber()));
+        }
+        return new Object[] {id, message.getFromPlateNumber(), message.getToPlateNumber(),
+            message.getConversationKey(), message.getMessageContent(), message.getMessageType(),
+            Timestamp.valueOf(message.getTimestamp()), message.getIsDelivered(), message.getIsRead(),
+            toTimestamp(message.getDeliveredAt()), toTimestamp(message.getReadAt()), message.getXmppMessageId()};
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    /**
+     * Stops accepting writes and stores everything already queued
+     */
+    @PreDestroy
+    public void stop() {
+        // The flusher notices within one poll and drains the queue before exiting
+        running = false;
+        try {
+            flusher.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingWrite left;
+        while ((left = queue.poll()) != null) {
+            left.future.completeExceptionally(new IllegalStateException("Message batch writer stopped"));
+        }
+    }
+
+    private static final class PendingWrite {
+        final List<Message> messages;
+        final CompletableFuture<List<Message>> future;
+
+        PendingWrite(List<Message> messages, CompletableFuture<List<Message>> future) {
+            this.messages = messages;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.xmpp.plate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.dto.MessageResponse;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.util.MessageCursor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a plate's full message history as NDJSON
+ * Archived messages come first, read page by page from the segments, followed by the rows still in
+ * the database, read through a server-side cursor. Memory use does not depend on the size of the history.
+ */
+@Service
+@Slf4j
+public class MessageExportService {
+
+    // Each branch is served in (timestamp, id) order by its plate index, so the ordered UNION ALL merges without a sort
+    private static final String EXPORT_SQL = "SELECT * FROM ("
+            + "SELECT id, from_plate_number, to_plate_number, message_content, message_type, timestamp,"
+            + " is_delivered, is_read, delivered_at, read_at FROM messages WHERE from_plate_number = ?"
+            + " UNION ALL "
+            + "SELECT id, from_plate_number, to_plate_number, message_content, message_type, timestamp,"
+            + " is_delivered, is_read, delivered_at, read_at FROM messages WHERE to_plate_number = ?"
+            + " AND from_plate_number <> ?"
+            + ") history ORDER BY timestamp ASC, id ASC";
+
+    // Same, limited to rows after the newest archived message; anything up to it is read from the archive
+    private static final String EXPORT_AFTER_ARCHIVE_SQL = "SELECT * FROM ("
+            + "SELECT id, from_plate_number, to_plate_number, message_content, message_type, timestamp,"
+            + " is_delivered, is_read, delivered_at, read_at FROM messages WHERE from_plate_number = ?"
+            + " AND timestamp >= ? AND (timestamp, id) > (?, ?)"
+            + " UNION ALL "
+            + "SELECT id, from_plate_number, to_plate_number, message_content, message_type, timestamp,"
+            + " is_delivered, is_read, delivered_at, read_at FROM messages WHERE to_plate_number = ?"
+            + " AND from_plate_number <> ? AND timestamp >= ? AND (timestamp, id) > (?, ?)"
+            + ") history ORDER BY timestamp ASC, id ASC";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private VehicleService vehicleService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private MessageService messageService;
+
+    private JdbcTemplate exportTemplate;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private final AtomicInteger activeExports = new AtomicInteger();
+
+    private final AtomicLong exportedRows = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // Dedicated template so the fetch size does not affect other queries
+        exportTemplate = new JdbcTemplate(dataSource);
+        exportTemplate.setFetchSize(messagingProperties.getExport().getFetchSize());
+
+        // The PostgreSQL driver only uses a cursor when autocommit is off. Repeatable read keeps
+        // the snapshot taken before the archive is read, so rows archived meanwhile are not lost.
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Validates the plate up front so unknown plates fail before the response is committed
+     */
+    public void checkExportable(String plateNumber) {
+        vehicleService.getVehicle(plateNumber);
+    }
+
+    /**
+     * Writes every message sent or received by the plate, oldest first, one JSON object per line
+     * @return the number of messages written
+     */
+    public long exportHistory(String plateNumber, OutputStream target, boolean gzip) throws IOException {
+        long started = System.currentTimeMillis();
+        int progressInterval = messagingProperties.getExport().getProgressInterval();
+        AtomicLong rows = new AtomicLong();
+        activeExports.incrementAndGet();
+        log.info("Starting message export for plate {} (gzip={})", plateNumber, gzip);
+
+        try (OutputStream out = gzip
+                ? new GZIPOutputStream(target, BUFFER_SIZE)
+                : new BufferedOutputStream(target, BUFFER_SIZE)) {
+            Consumer<MessageResponse> writer = message -> {
+                writeLine(out, message);
+                long written = rows.incrementAndGet();
+                exportedRows.incrementAndGet();
+                if (progressInterval > 0 && written % progressInterval == 0) {
+                    log.info("Message export for plate {}: {} rows written", plateNumber, written);
+                }
+            };
+            readOnlyTransaction.executeWithoutResult(status -> {
+                // Fixes the snapshot before the archive boundary is read: a row deleted before
+                // the snapshot was archived first, so it is at or below the boundary
+                exportTemplate.execute("SELECT 1");
+                MessageCursor archivedUpTo = archiveBoundary();
+                if (archivedUpTo == null) {
+                    exportTemplate.query(EXPORT_SQL, rs -> {
+                        writer.accept(mapRow(rs));
+                    }, plateNumber, plateNumber, plateNumber);
+                    return;
+                }
+                exportArchived(plateNumber, archivedUpTo, writer);
+                Timestamp boundary = Timestamp.valueOf(archivedUpTo.getTimestamp());
+                exportTemplate.query(EXPORT_AFTER_ARCHIVE_SQL, rs -> {
+                    writer.accept(mapRow(rs));
+                }, plateNumber, boundary, boundary, archivedUpTo.getId(),
+                    plateNumber, plateNumber, boundary, boundary, archivedUpTo.getId());
+            });
+        } catch (UncheckedIOException e) {
+            // Client went away; the cursor has already been released with the transaction
+            log.warn("Message export for plate {} aborted after {} rows: {}", plateNumber, rows.get(), e.getMessage());
+            throw e.getCause();
+        } finally {
+            activeExports.decrementAndGet();
+        }
+
+        log.info("Finished message export for plate {}: {} rows in {} ms",
+            plateNumber, rows.get(), System.currentTimeMillis() - started);
+        return rows.get();
+    }
+
+    public int getActiveExports() {
+        return activeExports.get();
+    }
+
+    public long getExportedRows() {
+        return exportedRows.get();
+    }
+
+    /**
+     * Newest archived message, including segments other nodes wrote, or null if nothing is archived
+     */
+    private MessageCursor archiveBoundary() {
+        if (!messagingProperties.getArchive().isEnabled()) {
+            return null;
+        }
+        try {
+            messageArchive.refresh();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read message archive " + messageArchive.getDirectory(), e);
+        }
+        return messageArchive.getNewestArchived();
+    }
+
+    /**
+     * Writes the plate's archived messages up to the boundary, oldest first
+     */
+    private void exportArchived(String plateNumber, MessageCursor archivedUpTo, Consumer<MessageResponse> writer) {
+        int pageSize = messagingProperties.getExport().getFetchSize();
+        MessageCursor cursor = MessageCursor.EARLIEST;
+        while (true) {
+            List<Message> page = messageArchive.findHistory(plateNumber, cursor, false, pageSize);
+            for (Message message : page) {
+                cursor = MessageCursor.of(message);
+                if (cursor.compareTo(archivedUpTo) > 0) {
+                    return;
+                }
+                writer.accept(messageService.mapToResponse(message));
+            }
+            if (page.size() < pageSize) {
+                return;
+            }
+        }
+    }
+
+    private void writeLine(OutputStream out, MessageResponse message) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(message));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MessageResponse mapRow(ResultSet rs) throws SQLException {
+        return MessageResponse.builder()
+                .id(rs.getLong("id"))
+                .fromPlateNumber(rs.getString("from_plate_number"))
+                .toPlateNumber(rs.getString("to_plate_number"))
+                .messageContent(rs.getString("message_content"))
+                .messageType(rs.getString("message_type"))
+                .timestamp(toLocalDateTime(rs.getTimestamp("timestamp")))
+                .isDelivered((Boolean) rs.getObject("is_delivered"))
+                .isRead((Boolean) rs.getObject("is_read"))
+                .deliveredAt(toLocalDateTime(rs.getTimestamp("delivered_at")))
+                .readAt(toLocalDateTime(rs.getTimestamp("read_at")))
+                .build();
+    }
+
+    private LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
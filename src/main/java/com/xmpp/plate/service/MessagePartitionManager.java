@@ -0,0 +1,286 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.config.MessagingProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the messages table range-partitioned on timestamp
+ * The plain table Hibernate created is rebuilt as a partitioned one by a one-off run with
+ * --migrate-message-partitions, never on a regular start, since the copy locks the table.
+ * Once it is partitioned, partitions are created premake intervals ahead, and partitions
+ * wholly older than the retention period are detached or dropped. A default partition takes rows
+ * outside every range, e.g. from a skewed clock, until maintenance moves them into their own.
+ * All work runs under an advisory lock, so only one node changes the schema at a time.
+ */
+// Hibernate creates the messages table first on a fresh database
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class MessagePartitionManager {
+
+    private static final String PARTITION_PREFIX = "messages_p";
+
+    private static final String DEFAULT_PARTITION = "messages_default";
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final long LOCK_KEY = 0x6d73677061727431L;
+
+    // Mirrors the @Index list on Message; recreated on the partitioned table
+    private static final List<String> INDEXES = List.of(
+            "CREATE INDEX idx_from_plate_timestamp ON messages (from_plate_number, timestamp, id)",
+            "CREATE INDEX idx_to_plate_timestamp ON messages (to_plate_number, timestamp, id)",
+            "CREATE INDEX idx_conversation_key_timestamp ON messages (conversation_key, timestamp, id)",
+            "CREATE INDEX idx_timestamp ON messages (timestamp)",
+            "CREATE INDEX idx_xmpp_message_id ON messages (xmpp_message_id)");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    @Autowired
+    private UnreadCountService unreadCountService;
+
+    @PostConstruct
+    public void init() {
+        if (!messagingProperties.getPartitioning().isEnabled()) {
+            return;
+        }
+        if (!isPartitioned()) {
+            log.warn("Partitioning is enabled but messages is not partitioned yet;"
+                    + " run the application once with --migrate-message-partitions");
+            return;
+        }
+        maintain();
+    }
+
+    /**
+     * Rebuilds the plain messages table as a partitioned one, then creates upcoming partitions
+     * Readers and writers of messages block until it finishes.
+     * @return false if the table was already partitioned
+     */
+    public boolean migrateToPartitions() {
+        if (!messagingProperties.getPartitioning().isEnabled()) {
+            throw new IllegalStateException("messaging.partitioning.enabled must be true to migrate");
+        }
+        Boolean migrated = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+            if (isPartitioned()) {
+                return false;
+            }
+            migrate();
+            return true;
+        });
+        maintain();
+        return Boolean.TRUE.equals(migrated);
+    }
+
+    /**
+     * Creates upcoming partitions and applies the retention policy
+     */
+    @Scheduled(initialDelayString = "${messaging.partitioning.maintenance-interval:3600000}",
+               fixedDelayString = "${messaging.partitioning.maintenance-interval:3600000}")
+    public void maintain() {
+        if (!messagingProperties.getPartitioning().isEnabled()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(" + LOCK_KEY + ")", Boolean.class);
+                if (!Boolean.TRUE.equals(locked) || !isPartitioned()) {
+                    return;
+                }
+                // Tables partitioned before the default partition existed get one here
+                createDefaultPartition();
+                LocalDate current = intervalStart(LocalDate.now());
+                createPartitions(current, next(current, messagingProperties.getPartitioning().getPremake() + 1));
+                splitDefaultPartition();
+                applyRetention();
+            });
+        } catch (Exception e) {
+            log.error("Message partition maintenance failed", e);
+        }
+    }
+
+    /**
+     * Start of the oldest range partition still attached, or null if messages is not partitioned
+     * Messages before it have been detached or dropped by retention.
+     */
+    public LocalDate getOldestPartitionStart() {
+        if (!messagingProperties.getPartitioning().isEnabled() || !isPartitioned()) {
+            return null;
+        }
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid"
+                + " WHERE i.inhparent = 'messages'::regclass ORDER BY c.relname", String.class).stream()
+                .filter(partition -> partition.startsWith(PARTITION_PREFIX))
+                .findFirst()
+                .map(partition -> LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), NAME_FORMAT))
+                .orElse(null);
+    }
+
+    private boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT relkind = 'p' FROM pg_class WHERE oid = to_regclass('messages')), false)",
+                Boolean.class);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    /**
+     * Rebuilds the plain messages table as a partitioned one, keeping rows, ids and indexes
+     */
+    private void migrate() {
+        log.info("Converting messages to a table partitioned by {}", messagingProperties.getPartitioning().getInterval());
+
+        jdbcTemplate.execute("LOCK TABLE messages IN ACCESS EXCLUSIVE MODE");
+        Long nextId = jdbcTemplate.queryForObject("SELECT GREATEST("
+                + " COALESCE((SELECT max(id) FROM messages), 0),"
+                + " COALESCE((SELECT last_value FROM pg_sequences WHERE sequencename = 'messages_id_seq'), 0)) + 1",
+                Long.class);
+        LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT min(timestamp) FROM messages", LocalDateTime.class);
+
+        jdbcTemplate.execute("ALTER TABLE messages RENAME TO messages_unpartitioned");
+        jdbcTemplate.execute("CREATE TABLE messages (LIKE messages_unpartitioned INCLUDING DEFAULTS)"
+                + " PARTITION BY RANGE (timestamp)");
+
+        LocalDate current = intervalStart(LocalDate.now());
+        LocalDate first = oldest != null ? intervalStart(oldest.toLocalDate()) : current;
+        createPartitions(first.isBefore(current) ? first : current,
+            next(current, messagingProperties.getPartitioning().getPremake() + 1));
+        createDefaultPartition();
+
+        int copied = jdbcTemplate.update("INSERT INTO messages SELECT * FROM messages_unpartitioned");
+        // Drops the identity sequence and index names along with the old table
+        jdbcTemplate.execute("DROP TABLE messages_unpartitioned");
+
+        // The partition key must be part of the primary key; ids stay unique through the sequence
+        jdbcTemplate.execute("ALTER TABLE messages ADD PRIMARY KEY (id, timestamp)");
+        jdbcTemplate.execute("CREATE SEQUENCE messages_id_seq START WITH " + nextId + " OWNED BY messages.id");
+        jdbcTemplate.execute("ALTER TABLE messages ALTER COLUMN id SET DEFAULT nextval('messages_id_seq')");
+        INDEXES.forEach(jdbcTemplate::execute);
+
+        log.info("Messages table partitioned; {} messages copied", copied);
+    }
+
+    /**
+     * Creates missing range partitions, moving any rows the default partition holds for them
+     * A range partition cannot be created over rows in the default partition, so those are
+     * copied into a standalone table first and it is attached afterwards.
+     */
+    private void createPartitions(LocalDate from, LocalDate to) {
+        for (LocalDate start = from; start.isBefore(to); start = next(start, 1)) {
+            String partition = PARTITION_PREFIX + start.format(NAME_FORMAT);
+            String bounds = " FOR VALUES FROM ('" + start + "') TO ('" + next(start, 1) + "')";
+            if (exists(partition)) {
+                continue;
+            }
+            if (!exists(DEFAULT_PARTITION) || !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ?)",
+                    Boolean.class, start.atStartOfDay(), next(start, 1).atStartOfDay()))) {
+                jdbcTemplate.execute("CREATE TABLE " + partition + " PARTITION OF messages" + bounds);
+                continue;
+            }
+
+            jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE messages INCLUDING DEFAULTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                    + " WHERE timestamp >= ? AND timestamp < ? RETURNING *) INSERT INTO " + partition + " SELECT * FROM moved",
+                    start.atStartOfDay(), next(start, 1).atStartOfDay());
+            jdbcTemplate.execute("ALTER TABLE messages ATTACH PARTITION " + partition + bounds);
+            log.info("Created message partition {} with {} messages from the default partition", partition, moved);
+        }
+    }
+
+    private void createDefaultPartition() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + DEFAULT_PARTITION + " PARTITION OF messages DEFAULT");
+    }
+
+    /**
+     * Gives every interval with rows in the default partition a range partition of its own
+     * Intervals already past retention are then removed like any other expired partition.
+     */
+    private void splitDefaultPartition() {
+        jdbcTemplate.queryForList("SELECT DISTINCT timestamp::date FROM " + DEFAULT_PARTITION, LocalDate.class).stream()
+                .map(this::intervalStart)
+                .distinct()
+                .sorted()
+                .forEach(start -> createPartitions(start, next(start, 1)));
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    /**
+     * Detaches or drops partitions whose whole range is older than the retention period
+     * Unread messages in them are taken off the unread counters first.
+     */
+    private void applyRetention() {
+        MessagingProperties.Partitioning partitioning = messagingProperties.getPartitioning();
+        if (partitioning.getRetentionDays() <= 0) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(partitioning.getRetentionDays());
+
+        List<String> partitions = jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid"
+                + " WHERE i.inhparent = 'messages'::regclass ORDER BY c.relname", String.class);
+        for (String partition : partitions) {
+            if (!partition.startsWith(PARTITION_PREFIX)) {
+                continue;
+            }
+            LocalDate start = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), NAME_FORMAT);
+            if (next(start, 1).isAfter(cutoff)) {
+                break;
+            }
+
+            List<Map<String, Object>> unread = jdbcTemplate.queryForList("SELECT to_plate_number, from_plate_number,"
+                    + " count(*) AS unread FROM " + partition + " WHERE is_read = false"
+                    + " GROUP BY to_plate_number, from_plate_number ORDER BY to_plate_number, from_plate_number");
+            unread.forEach(row -> unreadCountService.messagesRead((String) row.get("to_plate_number"),
+                (String) row.get("from_plate_number"), ((Number) row.get("unread")).longValue()));
+
+            jdbcTemplate.execute("ALTER TABLE messages DETACH PARTITION " + partition);
+            if ("drop".equalsIgnoreCase(partitioning.getRetentionAction())) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Dropped expired message partition {}", partition);
+            } else {
+                log.info("Detached expired message partition {}", partition);
+            }
+        }
+    }
+
+    private LocalDate intervalStart(LocalDate date) {
+        return switch (messagingProperties.getPartitioning().getInterval().toLowerCase()) {
+            case "day" -> date;
+            case "week" -> date.with(DayOfWeek.MONDAY);
+            default -> date.withDayOfMonth(1);
+        };
+    }
+
+    private LocalDate next(LocalDate start, long intervals) {
+        return switch (messagingProperties.getPartitioning().getInterval().toLowerCase()) {
+            case "day" -> start.plusDays(intervals);
+            case "week" -> start.plusWeeks(intervals);
+            default -> start.plusMonths(intervals);
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.xmpp.plate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off conversion of the messages table to a partitioned one
+ * Runs only when the application is started with --migrate-message-partitions, and exits
+ * once the table is partitioned instead of serving traffic.
+ */
+@Component
+@Slf4j
+public class MessagePartitionMigration implements ApplicationRunner {
+
+    private static final String OPTION = "migrate-message-partitions";
+
+    @Autowired
+    private MessagePartitionManager messagePartitionManager;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        int exitCode = 0;
+        try {
+            if (!messagePartitionManager.migrateToPartitions()) {
+                log.info("Messages table is already partitioned; nothing to migrate");
+            }
+        } catch (Exception e) {
+            log.error("Message partition migration failed", e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> code));
+    }
+}
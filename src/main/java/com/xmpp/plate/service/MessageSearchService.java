@@ -0,0 +1,508 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.dto.MessagePageResponse;
+import com.xmpp.plate.dto.SearchIndexStats;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.event.MessagesStoredEvent;
+import com.xmpp.plate.exception.SearchUnavailableException;
+import com.xmpp.plate.repository.MessageRepository;
+import com.xmpp.plate.util.ArchiveSegment;
+import com.xmpp.plate.util.MessageCursor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over message content, backed by a Lucene index on local disk
+ * New messages are indexed after their transaction commits; messages stored before the index
+ * existed, or indexed after its last commit before a crash, are added by a background backfill.
+ * Archived messages and messages in partitions dropped by retention are removed from the index.
+ * Searches see changes after the next refresh.
+ * Hits are returned newest first and paged with the same cursors as message history.
+ */
+@Service
+@Slf4j
+public class MessageSearchService {
+
+    // Message id the backfill resumes after on the next start, kept in the index's commit data
+    private static final String RESUME_AFTER = "resumeAfter";
+
+    // Newest archived message whose segment has been removed from the index, kept in the commit data
+    private static final String ARCHIVE_PURGED_UP_TO = "archivePurgedUpTo";
+
+    private static final Sort NEWEST_FIRST = new Sort(
+            new SortField("timestamp_sort", SortField.Type.LONG, true),
+            new SortField("id_sort", SortField.Type.LONG, true));
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private MessagePartitionManager messagePartitionManager;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private Directory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+
+    private volatile long backfilledUpTo;
+    private volatile boolean backfillComplete;
+
+    // Indexes newly stored messages, off the committing thread
+    private ExecutorService indexer;
+
+    // Highest message id indexed by any path
+    private final AtomicLong maxIndexedId = new AtomicLong();
+
+    // Lowest id of each batch handed to the indexer and not yet indexed
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+    private volatile MessageCursor archivePurgedUpTo = MessageCursor.EARLIEST;
+
+    // Start of the oldest partition whose predecessors have been removed from the index
+    private LocalDate retentionPurgedBefore;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        MessagingProperties.Search config = messagingProperties.getSearch();
+        if (!config.isEnabled()) {
+            return;
+        }
+        Path path = Paths.get(config.getDirectory());
+        Files.createDirectories(path);
+        directory = FSDirectory.open(path);
+
+        // Messages indexed after the last commit are picked up again by the backfill
+        if (DirectoryReader.indexExists(directory)) {
+            Map<String, String> commitData = SegmentInfos.readLatestCommit(directory).getUserData();
+            long resumeAfter = Long.parseLong(commitData.getOrDefault(RESUME_AFTER, "0"));
+            backfilledUpTo = Math.max(0, resumeAfter - config.getResumeMargin());
+            if (commitData.containsKey(ARCHIVE_PURGED_UP_TO)) {
+                archivePurgedUpTo = MessageCursor.decode(commitData.get(ARCHIVE_PURGED_UP_TO));
+            }
+        }
+
+        IndexWriterConfig writerConfig = new IndexWriterConfig(analyzer);
+        writerConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        writerConfig.setRAMBufferSizeMB(config.getRamBufferMb());
+        indexWriter = new IndexWriter(directory, writerConfig);
+        searcherManager = new SearcherManager(indexWriter, null);
+        indexer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Message search index at {}, backfilling after message id {}", path.toAbsolutePath(), backfilledUpTo);
+    }
+
+    /**
+     * Queues newly stored messages for indexing once their transaction has committed
+     * The batch counts as in flight until indexed, so a commit never records a resume point past it.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessagesStored(MessagesStoredEvent event) {
+        List<Message> messages = event.getMessages();
+        if (indexWriter == null || messages.isEmpty()) {
+            return;
+        }
+        long firstId = messages.stream().mapToLong(Message::getId).min().getAsLong();
+        inFlight.add(firstId);
+        try {
+            indexer.execute(() -> {
+                // A failed batch stays in flight, so the next start indexes it again
+                if (index(messages)) {
+                    inFlight.remove(firstId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Message indexer stopped; {} messages are indexed on the next start", messages.size());
+        }
+    }
+
+    /**
+     * Searches message content; every word in the query must occur in a hit
+     * @param plates limits hits to messages sent or received by any of these plates; all plates if empty
+     * @param from inclusive lower bound on the message timestamp, or null
+     * @param to inclusive upper bound on the message timestamp, or null
+     */
+    public MessagePageResponse search(String text, Collection<String> plates, LocalDateTime from, LocalDateTime to,
+                                      Integer limit, String before) {
+        if (searcherManager == null) {
+            throw new SearchUnavailableException("Message search is not enabled");
+        }
+        MessagingProperties.History config = messagingProperties.getHistory();
+        int size = limit == null ? config.getDefaultPageSize() : Math.max(1, Math.min(limit, config.getMaxPageSize()));
+        searches.incrementAndGet();
+
+        List<String> terms = analyze(text);
+        if (terms.isEmpty()) {
+            return MessagePageResponse.builder().messages(List.of()).build();
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        terms.forEach(term -> query.add(new TermQuery(new Term("content", term)), BooleanClause.Occur.MUST));
+        if (plates != null && !plates.isEmpty()) {
+            query.add(new TermInSetQuery("plate", plates.stream().map(BytesRef::new).collect(Collectors.toList())),
+                BooleanClause.Occur.FILTER);
+        }
+        if (from != null || to != null) {
+            query.add(LongPoint.newRangeQuery("timestamp",
+                from != null ? toMicros(from) : Long.MIN_VALUE,
+                to != null ? toMicros(to) : Long.MAX_VALUE), BooleanClause.Occur.FILTER);
+        }
+
+        FieldDoc after = null;
+        if (before != null) {
+            MessageCursor cursor = MessageCursor.decode(before);
+            after = new FieldDoc(Integer.MAX_VALUE, Float.NaN, new Object[] {toMicros(cursor.getTimestamp()), cursor.getId()});
+        }
+
+        IndexSearcher searcher;
+        try {
+            searcher = searcherManager.acquire();
+        } catch (IOException e) {
+            throw new SearchUnavailableException("Message search index cannot be opened", e);
+        }
+        try {
+            TopDocs hits = searcher.searchAfter(after, query.build(), size + 1, NEWEST_FIRST);
+            boolean hasMore = hits.scoreDocs.length > size;
+            List<Message> found = load(searcher, hits.scoreDocs, Math.min(size, hits.scoreDocs.length));
+            return MessagePageResponse.builder()
+                    .messages(found.stream().map(messageService::mapToResponse).collect(Collectors.toList()))
+                    .olderCursor(hasMore ? cursorOf((FieldDoc) hits.scoreDocs[size - 1]).encode() : null)
+                    .build();
+        } catch (IOException e) {
+            throw new SearchUnavailableException("Message search failed: " + e.getMessage(), e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    public SearchIndexStats getStats() {
+        int documents = 0;
+        if (searcherManager != null) {
+            try {
+                IndexSearcher searcher = searcherManager.acquire();
+                documents = searcher.getIndexReader().numDocs();
+                release(searcher);
+            } catch (IOException e) {
+                log.warn("Could not read search index size", e);
+            }
+        }
+        return SearchIndexStats.builder()
+                .documents(documents)
+                .indexed(indexed.get())
+                .searches(searches.get())
+                .backfillComplete(backfillComplete)
+                .build();
+    }
+
+    /**
+     * Indexes one batch of messages the index has not seen, oldest id first
+     * Covers history from before the index existed and anything lost since the last commit.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${messaging.search.backfill-interval:1000}")
+    public void backfill() {
+        if (indexWriter == null || backfillComplete) {
+            return;
+        }
+        try {
+            List<Message> batch = messageRepository.findByIdGreaterThanOrderByIdAsc(backfilledUpTo,
+                PageRequest.of(0, messagingProperties.getSearch().getBackfillBatchSize()));
+            if (batch.isEmpty()) {
+                backfillComplete = true;
+                commit();
+                log.info("Message search backfill complete");
+                return;
+            }
+            if (index(batch)) {
+                backfilledUpTo = batch.get(batch.size() - 1).getId();
+            }
+        } catch (Exception e) {
+            log.error("Message search backfill failed at id {}", backfilledUpTo, e);
+        }
+    }
+
+    /**
+     * Makes recently indexed messages visible to searches
+     */
+    @Scheduled(fixedDelayString = "${messaging.search.refresh-interval:1000}")
+    public void refresh() {
+        if (searcherManager == null) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("Message search refresh failed", e);
+        }
+    }
+
+    /**
+     * Removes archived messages, and messages in partitions dropped by retention, from the index
+     * Runs on every node, since each keeps its own index; segments written by other nodes are
+     * found in the shared archive directory.
+     */
+    @Scheduled(fixedDelayString = "${messaging.search.purge-interval:60000}")
+    public void purgeRemoved() {
+        if (indexWriter == null) {
+            return;
+        }
+        try {
+            purgeArchived();
+            purgeExpiredPartitions();
+        } catch (Exception e) {
+            log.error("Message search purge failed", e);
+        }
+    }
+
+    /**
+     * Makes the index durable
+     */
+    @Scheduled(fixedDelayString = "${messaging.search.commit-interval:30000}")
+    public void commit() {
+        if (indexWriter == null) {
+            return;
+        }
+        try {
+            long resumeAfter = backfillComplete ? indexedUpTo() : backfilledUpTo;
+            indexWriter.setLiveCommitData(Map.of(
+                RESUME_AFTER, String.valueOf(resumeAfter),
+                ARCHIVE_PURGED_UP_TO, archivePurgedUpTo.encode()).entrySet());
+            indexWriter.commit();
+        } catch (IOException e) {
+            log.error("Message search commit failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (indexWriter == null) {
+            return;
+        }
+        indexer.shutdown();
+        try {
+            indexer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        commit();
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    /**
+     * Highest id below which every committed message has been indexed
+     * The indexer finishes batches out of id order, so a batch still in flight holds it back.
+     */
+    private long indexedUpTo() {
+        long upTo = Math.max(maxIndexedId.get(), backfilledUpTo);
+        Long oldestInFlight = inFlight.ceiling(Long.MIN_VALUE);
+        return oldestInFlight == null ? upTo : Math.min(upTo, oldestInFlight - 1);
+    }
+
+    private boolean index(List<Message> messages) {
+        try {
+            for (Message message : messages) {
+                indexWriter.updateDocument(new Term("id", String.valueOf(message.getId())), toDocument(message));
+                maxIndexedId.accumulateAndGet(message.getId(), Math::max);
+            }
+            indexed.addAndGet(messages.size());
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to index {} messages", messages.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the messages of archive segments newer than the last one purged
+     */
+    private void purgeArchived() throws IOException {
+        if (!messagingProperties.getArchive().isEnabled()) {
+            return;
+        }
+        messageArchive.refresh();
+        for (ArchiveSegment segment : messageArchive.getSegments()) {
+            if (segment.getLast().compareTo(archivePurgedUpTo) <= 0) {
+                continue;
+            }
+            indexWriter.deleteDocuments(segment.readAll().stream()
+                    .map(message -> new Term("id", String.valueOf(message.getId())))
+                    .toArray(Term[]::new));
+            archivePurgedUpTo = segment.getLast();
+            log.info("Removed archived messages up to {} from the search index", segment.getLast().getTimestamp());
+        }
+    }
+
+    /**
+     * Deletes messages older than the oldest partition left after retention
+     */
+    private void purgeExpiredPartitions() throws IOException {
+        MessagingProperties.Partitioning partitioning = messagingProperties.getPartitioning();
+        if (!partitioning.isEnabled() || partitioning.getRetentionDays() <= 0) {
+            return;
+        }
+        LocalDate oldest = messagePartitionManager.getOldestPartitionStart();
+        if (oldest == null || (retentionPurgedBefore != null && !oldest.isAfter(retentionPurgedBefore))) {
+            return;
+        }
+        indexWriter.deleteDocuments(LongPoint.newRangeQuery("timestamp", Long.MIN_VALUE, toMicros(oldest.atStartOfDay()) - 1));
+        retentionPurgedBefore = oldest;
+        log.info("Removed messages before {} from the search index", oldest);
+    }
+
+    private Document toDocument(Message message) {
+        long timestamp = toMicros(message.getTimestamp());
+        Document document = new Document();
+        document.add(new StringField("id", String.valueOf(message.getId()), Field.Store.YES));
+        document.add(new NumericDocValuesField("id_sort", message.getId()));
+        document.add(new StringField("plate", message.getFromPlateNumber(), Field.Store.NO));
+        document.add(new StringField("plate", message.getToPlateNumber(), Field.Store.NO));
+        document.add(new StoredField("from", message.getFromPlateNumber()));
+        document.add(new StoredField("to", message.getToPlateNumber()));
+        document.add(new TextField("content", message.getMessageContent(), Field.Store.YES));
+        if (message.getMessageType() != null) {
+            document.add(new StoredField("type", message.getMessageType()));
+        }
+        document.add(new LongPoint("timestamp", timestamp));
+        document.add(new NumericDocValuesField("timestamp_sort", timestamp));
+        document.add(new StoredField("timestamp", timestamp));
+        return document;
+    }
+
+    /**
+     * Loads hits from the database for current read state
+     * Hits no longer in the table, archived or dropped since the last purge, are left out.
+     */
+    private List<Message> load(IndexSearcher searcher, ScoreDoc[] hits, int count) throws IOException {
+        StoredFields storedFields = searcher.storedFields();
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(storedFields.document(hits[i].doc));
+        }
+        List<Long> ids = documents.stream().map(doc -> Long.parseLong(doc.get("id"))).collect(Collectors.toList());
+        Map<Long, Message> stored = messageRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity()));
+
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Message message = stored.get(ids.get(i));
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Position of a hit, from its sort values, so paging works even if the hit itself was left out
+     */
+    private static MessageCursor cursorOf(FieldDoc hit) {
+        return MessageCursor.of(fromMicros((Long) hit.fields[0]), (Long) hit.fields[1]);
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream("content", text)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                terms.add(term.toString());
+            }
+            tokens.end();
+        } catch (IOException e) {
+            throw new SearchUnavailableException("Could not analyze search query", e);
+        }
+        return terms;
+    }
+
+    private void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            log.warn("Failed to release index searcher", e);
+        }
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
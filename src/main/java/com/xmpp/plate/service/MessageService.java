@@ -1,28 +1,48 @@
 package com.xmpp.plate.service;
 
-import com.xmpp.plate.config.XmppConnectionManager;
+import com.xmpp.plate.config.MessagingMetrics;
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.dto.BatchMessageItem;
+import com.xmpp.plate.dto.BatchMessageRequest;
+import com.xmpp.plate.dto.BatchMessageResponse;
+import com.xmpp.plate.dto.BatchMessageResult;
+import com.xmpp.plate.dto.MessagePageResponse;
 import com.xmpp.plate.dto.MessageRequest;
 import com.xmpp.plate.dto.MessageResponse;
+import com.xmpp.plate.dto.ReadReceipt;
 import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.entity.OutboxMessage;
+import com.xmpp.plate.event.MessagesStoredEvent;
+import com.xmpp.plate.exception.InvalidCursorException;
+import com.xmpp.plate.exception.MessageNotFoundException;
 import com.xmpp.plate.exception.VehicleNotFoundException;
 import com.xmpp.plate.exception.XmppOperationException;
 import com.xmpp.plate.repository.MessageRepository;
+import com.xmpp.plate.repository.OutboxMessageRepository;
+import com.xmpp.plate.transport.OutboundMessage;
+import com.xmpp.plate.transport.XmppTransport;
+import com.xmpp.plate.util.MessageCursor;
 import lombok.extern.slf4j.Slf4j;
-import org.jivesoftware.smack.chat2.Chat;
-import org.jivesoftware.smack.chat2.ChatManager;
-import org.jivesoftware.smack.packet.MessageBuilder;
-import org.jivesoftware.smack.tcp.XMPPTCPConnection;
-import org.jxmpp.jid.EntityBareJid;
-import org.jxmpp.jid.impl.JidCreate;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for handling message operations
@@ -34,58 +54,63 @@ public class MessageService {
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
     @Autowired
     private VehicleService vehicleService;
 
     @Autowired
-    private XmppConnectionManager connectionManager;
+    private XmppTransport xmppTransport;
 
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
-    @Value("${xmpp.domain}")
-    private String xmppDomain;
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ConversationKeyBackfill conversationKeyBackfill;
+
+    @Autowired
+    private UnreadCountService unreadCountService;
+
+    @Autowired
+    private MessageBatchWriter messageBatchWriter;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MessagingMetrics messagingMetrics;
 
     /**
      * Sends a message from one vehicle to another
+     * The row is stored through the batch writer, sharing one insert with concurrent sends.
      */
-    @Transactional
     public MessageResponse sendMessage(MessageRequest request) {
         log.info("Sending message from {} to {}", request.getFromPlateNumber(), request.getToPlateNumber());
 
         try {
-            // Validate sender exists
-            vehicleService.getVehicle(request.getFromPlateNumber());
-            
-            // Validate recipient exists
-            vehicleService.getVehicle(request.getToPlateNumber());
-
-            // Get XMPP password for sender
-            String password = vehicleService.getXmppPassword(request.getFromPlateNumber());
-
-            // Get or create XMPP connection
-            XMPPTCPConnection connection = connectionManager.getConnection(
-                request.getFromPlateNumber(), 
-                password
+            // Validate sender and recipient exist
+            messagingMetrics.sendStage(MessagingMetrics.VALIDATE).record(() -> {
+                vehicleService.getVehicle(request.getFromPlateNumber());
+                vehicleService.getVehicle(request.getToPlateNumber());
+            });
+
+            // Send over the configured XMPP transport; it times the acquire and send stages
+            String stanzaId = xmppTransport.sendMessage(
+                request.getFromPlateNumber(),
+                request.getToPlateNumber(),
+                request.getMessageContent()
             );
 
-            // Create recipient JID
-            EntityBareJid recipientJid = JidCreate.entityBareFrom(
-                request.getToPlateNumber() + "@" + xmppDomain
-            );
-
-            // Get chat manager and create chat
-            ChatManager chatManager = ChatManager.getInstanceFor(connection);
-            Chat chat = chatManager.chatWith(recipientJid);
-
-            // Create and send XMPP message
-            org.jivesoftware.smack.packet.Message xmppMessage = MessageBuilder.buildMessage()
-                    .to(recipientJid)
-                    .setBody(request.getMessageContent())
-                    .build();
-
-            chat.send(xmppMessage);
-
             // Save message to database
             Message message = Message.builder()
                     .fromPlateNumber(request.getFromPlateNumber())
@@ -95,19 +120,26 @@ public class MessageService {
                     .timestamp(LocalDateTime.now())
                     .isDelivered(true)
                     .deliveredAt(LocalDateTime.now())
-                    .xmppMessageId(xmppMessage.getStanzaId())
+                    .xmppMessageId(stanzaId)
                     .build();
 
-            message = messageRepository.save(message);
+            Message pending = message;
+            message = messagingMetrics.sendStage(MessagingMetrics.PERSIST)
+                    .record(() -> messageBatchWriter.write(pending).join());
 
             log.info("Message sent successfully from {} to {}", request.getFromPlateNumber(), request.getToPlateNumber());
 
+            if (message.getId() == null) {
+                // Another node stored the echo first and has broadcast it
+                return mapToResponse(storedCopy(message));
+            }
+
             // Broadcast via WebSocket
             MessageResponse response = mapToResponse(message);
-            messagingTemplate.convertAndSend(
+            messagingMetrics.sendStage(MessagingMetrics.BROADCAST).record(() -> messagingTemplate.convertAndSend(
                 "/topic/messages/" + request.getToPlateNumber(), 
                 response
-            );
+            ));
 
             return response;
 
@@ -120,36 +152,328 @@ public class MessageService {
     }
 
     /**
-     * Gets message history for a plate number
+     * Queues a message for asynchronous delivery through the outbox
+     * Only database writes happen here; OutboxDispatcher performs the XMPP send.
      */
-    public List<MessageResponse> getMessageHistory(String plateNumber) {
+    @Transactional
+    public MessageResponse queueMessage(MessageRequest request) {
+        log.info("Queueing message from {} to {}", request.getFromPlateNumber(), request.getToPlateNumber());
+
+        // Validate sender exists
+        vehicleService.getVehicle(request.getFromPlateNumber());
+
+        // Validate recipient exists
+        vehicleService.getVehicle(request.getToPlateNumber());
+
+        // Save message as not yet delivered
+        Message message = Message.builder()
+                .fromPlateNumber(request.getFromPlateNumber())
+                .toPlateNumber(request.getToPlateNumber())
+                .messageContent(request.getMessageContent())
+                .messageType(request.getMessageType())
+                .timestamp(LocalDateTime.now())
+                .isDelivered(false)
+                .build();
+
+        message = messageRepository.save(message);
+        unreadCountService.messagesStored(List.of(message));
+        eventPublisher.publishEvent(new MessagesStoredEvent(this, List.of(message)));
+
+        // Record the delivery job in the same transaction
+        outboxRepository.save(OutboxMessage.builder()
+                .messageId(message.getId())
+                .fromPlateNumber(message.getFromPlateNumber())
+                .toPlateNumber(message.getToPlateNumber())
+                .messageContent(message.getMessageContent())
+                .build());
+
+        return mapToResponse(message);
+    }
+
+    /**
+     * Sends messages from one vehicle to many
+     * All plates are validated with one query, the sender's session is reused for every stanza,
+     * and the resulting rows are persisted in a single transaction. Results are in request order.
+     */
+    public BatchMessageResponse sendBatch(BatchMessageRequest request) {
+        String fromPlate = request.getFromPlateNumber();
+        List<BatchMessageItem> items = toItems(request);
+        log.info("Sending batch of {} messages from {}", items.size(), fromPlate);
+
+        // Validate sender and all recipients in one query
+        Set<String> plates = new HashSet<>();
+        plates.add(fromPlate);
+        items.forEach(item -> plates.add(item.getToPlateNumber()));
+        Set<String> registered = vehicleService.findRegisteredPlates(plates);
+        if (!registered.contains(fromPlate)) {
+            throw new VehicleNotFoundException("Vehicle with plate number " + fromPlate + " not found");
+        }
+
+        BatchMessageResult[] results = new BatchMessageResult[items.size()];
+        List<Integer> accepted = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            String toPlate = items.get(i).getToPlateNumber();
+            if (registered.contains(toPlate)) {
+                accepted.add(i);
+            } else {
+                results[i] = BatchMessageResult.builder()
+                        .toPlateNumber(toPlate)
+                        .status("NOT_FOUND")
+                        .error("Vehicle with plate number " + toPlate + " not found")
+                        .build();
+            }
+        }
+
+        if (messagingProperties.getOutbox().isEnabled()) {
+            queueBatch(request, items, accepted, results);
+        } else {
+            deliverBatch(request, items, accepted, results);
+        }
+
+        int succeeded = (int) Arrays.stream(results)
+                .filter(result -> result.getMessage() != null)
+                .count();
+        return BatchMessageResponse.builder()
+                .total(results.length)
+                .succeeded(succeeded)
+                .failed(results.length - succeeded)
+                .results(Arrays.asList(results))
+                .build();
+    }
+
+    private void deliverBatch(BatchMessageRequest request, List<BatchMessageItem> items,
+                              List<Integer> accepted, BatchMessageResult[] results) {
+        List<OutboundMessage> outbound = new ArrayList<>(accepted.size());
+        accepted.forEach(i -> outbound.add(
+            new OutboundMessage(items.get(i).getToPlateNumber(), items.get(i).getMessageContent())));
+
+        try {
+            xmppTransport.sendMessages(request.getFromPlateNumber(), outbound);
+        } catch (Exception e) {
+            log.error("Failed to send message batch", e);
+            throw new XmppOperationException("Failed to send message batch: " + e.getMessage(), e);
+        }
+
+        // Persist everything that went out in one batch and one transaction
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> messages = new ArrayList<>();
+        for (OutboundMessage sent : outbound) {
+            if (sent.isSent()) {
+                messages.add(Message.builder()
+                        .fromPlateNumber(request.getFromPlateNumber())
+                        .toPlateNumber(sent.getToPlateNumber())
+                        .messageContent(sent.getBody())
+                        .messageType(request.getMessageType())
+                        .timestamp(now)
+                        .isDelivered(true)
+                        .deliveredAt(now)
+                        .xmppMessageId(sent.getStanzaId())
+                        .build());
+            }
+        }
+        List<Message> saved = messageBatchWriter.writeAll(messages).join();
+
+        int next = 0;
+        for (int k = 0; k < outbound.size(); k++) {
+            OutboundMessage sent = outbound.get(k);
+            int index = accepted.get(k);
+            if (sent.isSent()) {
+                Message message = saved.get(next++);
+                MessageResponse response = mapToResponse(storedCopy(message));
+                // A message without an id was stored, and broadcast, by the node that received its echo
+                if (message.getId() != null) {
+                    messagingTemplate.convertAndSend("/topic/messages/" + sent.getToPlateNumber(), response);
+                }
+                results[index] = BatchMessageResult.builder()
+                        .toPlateNumber(sent.getToPlateNumber())
+                        .status("SENT")
+                        .message(response)
+                        .build();
+            } else {
+                results[index] = BatchMessageResult.builder()
+                        .toPlateNumber(sent.getToPlateNumber())
+                        .status("FAILED")
+                        .error(sent.getError().getMessage())
+                        .build();
+            }
+        }
+    }
+
+    /**
+     * Returns the stored row for a message the batch writer skipped as already stored
+     */
+    private Message storedCopy(Message message) {
+        if (message.getId() != null) {
+            return message;
+        }
+        return messageRepository.findFirstByFromPlateNumberAndToPlateNumberAndXmppMessageId(
+                message.getFromPlateNumber(), message.getToPlateNumber(), message.getXmppMessageId()).orElse(message);
+    }
+
+    private void queueBatch(BatchMessageRequest request, List<BatchMessageItem> items,
+                            List<Integer> accepted, BatchMessageResult[] results) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> saved = transactionTemplate.execute(status -> {
+            List<Message> messages = new ArrayList<>(accepted.size());
+            accepted.forEach(i -> messages.add(Message.builder()
+                    .fromPlateNumber(request.getFromPlateNumber())
+                    .toPlateNumber(items.get(i).getToPlateNumber())
+                    .messageContent(items.get(i).getMessageContent())
+                    .messageType(request.getMessageType())
+                    .timestamp(now)
+                    .isDelivered(false)
+                    .build()));
+            List<Message> persisted = messageRepository.saveAll(messages);
+            unreadCountService.messagesStored(persisted);
+            eventPublisher.publishEvent(new MessagesStoredEvent(this, persisted));
+
+            outboxRepository.saveAll(persisted.stream()
+                    .map(message -> OutboxMessage.builder()
+                            .messageId(message.getId())
+                            .fromPlateNumber(message.getFromPlateNumber())
+                            .toPlateNumber(message.getToPlateNumber())
+                            .messageContent(message.getMessageContent())
+                            .build())
+                    .collect(Collectors.toList()));
+            return persisted;
+        });
+
+        for (int k = 0; k < accepted.size(); k++) {
+            Message message = saved.get(k);
+            results[accepted.get(k)] = BatchMessageResult.builder()
+                    .toPlateNumber(message.getToPlateNumber())
+                    .status("QUEUED")
+                    .message(mapToResponse(message))
+                    .build();
+        }
+    }
+
+    private List<BatchMessageItem> toItems(BatchMessageRequest request) {
+        if (request.getItems() != null && !request.getItems().isEmpty()) {
+            return request.getItems();
+        }
+        return request.getToPlateNumbers().stream()
+                .map(toPlate -> new BatchMessageItem(toPlate, request.getMessageContent()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets one page of message history for a plate number, newest first
+     */
+    public MessagePageResponse getMessageHistory(String plateNumber, Integer limit, String before, String after) {
         log.info("Getting message history for plate: {}", plateNumber);
 
         // Validate vehicle exists
         vehicleService.getVehicle(plateNumber);
 
-        List<Message> messages = messageRepository
-                .findByFromPlateNumberOrToPlateNumberOrderByTimestampDesc(plateNumber, plateNumber);
-
-        return messages.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return fetchPage(limit, before, after, false,
+            withArchive(true, (cursor, size) -> messageRepository.findHistoryBefore(plateNumber, cursor.getTimestamp(), cursor.getId(), size),
+                (cursor, size) -> messageArchive.findHistory(plateNumber, cursor, true, size)),
+            withArchive(false, (cursor, size) -> messageRepository.findHistoryAfter(plateNumber, cursor.getTimestamp(), cursor.getId(), size),
+                (cursor, size) -> messageArchive.findHistory(plateNumber, cursor, false, size)));
     }
 
     /**
-     * Gets conversation between two plates
+     * Gets one page of the conversation between two plates, oldest first within the page
+     * Without a cursor the page holds the most recent messages.
      */
-    public List<MessageResponse> getConversation(String plate1, String plate2) {
+    public MessagePageResponse getConversation(String plate1, String plate2, Integer limit, String before, String after) {
         log.info("Getting conversation between {} and {}", plate1, plate2);
 
-        List<Message> messages = messageRepository
-                .findByFromPlateNumberAndToPlateNumberOrToPlateNumberAndFromPlateNumberOrderByTimestampAsc(
-                    plate1, plate2, plate1, plate2
-                );
+        String conversationKey = Message.conversationKey(plate1, plate2);
+        BiFunction<MessageCursor, Integer, List<Message>> archivedOlder =
+            (cursor, size) -> messageArchive.findConversation(conversationKey, cursor, true, size);
+        BiFunction<MessageCursor, Integer, List<Message>> archivedNewer =
+            (cursor, size) -> messageArchive.findConversation(conversationKey, cursor, false, size);
 
-        return messages.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        if (!conversationKeyBackfill.isComplete()) {
+            return fetchPage(limit, before, after, true,
+                withArchive(true, (cursor, size) -> messageRepository.findConversationByPlatesBefore(plate1, plate2, cursor.getTimestamp(), cursor.getId(), size), archivedOlder),
+                withArchive(false, (cursor, size) -> messageRepository.findConversationByPlatesAfter(plate1, plate2, cursor.getTimestamp(), cursor.getId(), size), archivedNewer));
+        }
+
+        return fetchPage(limit, before, after, true,
+            withArchive(true, (cursor, size) -> messageRepository.findConversationBefore(conversationKey, cursor.getTimestamp(), cursor.getId(), size), archivedOlder),
+            withArchive(false, (cursor, size) -> messageRepository.findConversationAfter(conversationKey, cursor.getTimestamp(), cursor.getId(), size), archivedNewer));
+    }
+
+    /**
+     * Adds archived messages to a messages-table query once the page reaches back to the archive
+     * Archived rows are no longer in the table, so the two results are merged in keyset order.
+     * Pages of recent history that are already full never touch the archive.
+     */
+    private BiFunction<MessageCursor, Integer, List<Message>> withArchive(boolean older,
+            BiFunction<MessageCursor, Integer, List<Message>> tableQuery,
+            BiFunction<MessageCursor, Integer, List<Message>> archiveQuery) {
+        return (cursor, size) -> {
+            List<Message> rows = tableQuery.apply(cursor, size);
+            // Another node may have archived, and deleted, rows since this node last looked
+            messageArchive.refreshIfChanged();
+            MessageCursor newestArchived = messageArchive.getNewestArchived();
+            if (newestArchived == null) {
+                return rows;
+            }
+            boolean reachesArchive = older
+                    ? rows.size() < size || MessageCursor.of(rows.get(rows.size() - 1)).compareTo(newestArchived) < 0
+                    : cursor.compareTo(newestArchived) < 0;
+            if (!reachesArchive) {
+                return rows;
+            }
+
+            Comparator<Message> order = Comparator.comparing((Message message) -> MessageCursor.of(message));
+            Map<Long, Message> merged = new LinkedHashMap<>();
+            // A segment becomes visible just before its rows are deleted, so a message may briefly be in both
+            Stream.concat(rows.stream(), archiveQuery.apply(cursor, size).stream())
+                    .sorted(older ? order.reversed() : order)
+                    .forEach(message -> merged.putIfAbsent(message.getId(), message));
+            return merged.values().stream().limit(size).collect(Collectors.toList());
+        };
+    }
+
+    /**
+     * Runs a keyset query in the requested direction, fetching one extra row to tell whether more remain
+     */
+    private MessagePageResponse fetchPage(Integer limit, String before, String after, boolean ascending,
+                                          BiFunction<MessageCursor, Integer, List<Message>> olderQuery,
+                                          BiFunction<MessageCursor, Integer, List<Message>> newerQuery) {
+        if (before != null && after != null) {
+            throw new InvalidCursorException("Only one of 'before' and 'after' may be given");
+        }
+        MessagingProperties.History config = messagingProperties.getHistory();
+        int size = limit == null ? config.getDefaultPageSize() : Math.max(1, Math.min(limit, config.getMaxPageSize()));
+
+        // Rows come back newest first when paging older, oldest first when paging newer
+        boolean newer = after != null;
+        MessageCursor cursor = newer ? MessageCursor.decode(after)
+                : before != null ? MessageCursor.decode(before) : MessageCursor.LATEST;
+        List<Message> rows = new ArrayList<>(newer ? newerQuery.apply(cursor, size + 1) : olderQuery.apply(cursor, size + 1));
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows.remove(size);
+        }
+        if (newer) {
+            Collections.reverse(rows);
+        }
+
+        String olderCursor;
+        String newerCursor;
+        if (newer) {
+            // An empty page keeps the caller's cursor so it can be polled again
+            olderCursor = rows.isEmpty() ? after : MessageCursor.of(rows.get(rows.size() - 1)).encode();
+            newerCursor = rows.isEmpty() ? after : MessageCursor.of(rows.get(0)).encode();
+        } else {
+            olderCursor = hasMore ? MessageCursor.of(rows.get(rows.size() - 1)).encode() : null;
+            newerCursor = rows.isEmpty() ? before : MessageCursor.of(rows.get(0)).encode();
+        }
+
+        if (ascending) {
+            Collections.reverse(rows);
+        }
+        return MessagePageResponse.builder()
+                .messages(rows.stream().map(this::mapToResponse).collect(Collectors.toList()))
+                .olderCursor(olderCursor)
+                .newerCursor(newerCursor)
+                .build();
     }
 
     /**
@@ -158,23 +482,75 @@ public class MessageService {
     @Transactional
     public void markAsRead(Long messageId) {
         Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new RuntimeException("Message not found"));
-        
-        message.setIsRead(true);
-        message.setReadAt(LocalDateTime.now());
-        messageRepository.save(message);
+                .orElseThrow(() -> new MessageNotFoundException("Message " + messageId + " not found"));
+
+        // Conditional update so concurrent calls decrement the counter only once
+        int updated = messageRepository.markReadIfUnread(messageId, message.getTimestamp(), LocalDateTime.now());
+        unreadCountService.messagesRead(message.getToPlateNumber(), message.getFromPlateNumber(), updated);
 
         log.info("Message {} marked as read", messageId);
     }
 
     /**
-     * Gets unread message count
+     * Marks every message the sender sent to the reader, up to a message or a point in time, as read
+     * One set-based UPDATE; the sender gets a single read receipt on /topic/read-receipts/{sender}.
+     * With neither bound given, everything received so far is marked read.
+     */
+    @Transactional
+    public ReadReceipt markConversationRead(String readerPlate, String senderPlate,
+                                            Long upToMessageId, LocalDateTime upTo) {
+        log.info("Marking messages from {} to {} as read", senderPlate, readerPlate);
+
+        LocalDateTime boundTimestamp;
+        long boundId;
+        if (upToMessageId != null) {
+            Message bound = messageRepository.findById(upToMessageId)
+                    .filter(message -> message.getFromPlateNumber().equals(senderPlate)
+                            && message.getToPlateNumber().equals(readerPlate))
+                    .orElseThrow(() -> new MessageNotFoundException(
+                        "Message " + upToMessageId + " from " + senderPlate + " to " + readerPlate + " not found"));
+            boundTimestamp = bound.getTimestamp();
+            boundId = bound.getId();
+        } else {
+            boundTimestamp = upTo != null ? upTo : LocalDateTime.now();
+            boundId = Long.MAX_VALUE;
+        }
+
+        LocalDateTime readAt = LocalDateTime.now();
+        int marked = messageRepository.markConversationReadUpTo(readerPlate, senderPlate, boundTimestamp, boundId, readAt);
+        unreadCountService.messagesRead(readerPlate, senderPlate, marked);
+
+        ReadReceipt receipt = ReadReceipt.builder()
+                .readerPlateNumber(readerPlate)
+                .senderPlateNumber(senderPlate)
+                .readUpTo(boundTimestamp)
+                .readUpToMessageId(upToMessageId)
+                .readAt(readAt)
+                .markedCount(marked)
+                .build();
+        if (marked > 0) {
+            messagingTemplate.convertAndSend("/topic/read-receipts/" + senderPlate, receipt);
+        }
+
+        log.info("Marked {} messages from {} to {} as read", marked, senderPlate, readerPlate);
+        return receipt;
+    }
+
+    /**
+     * Gets unread message count from the maintained counters
      */
     public long getUnreadCount(String plateNumber) {
-        return messageRepository.countByToPlateNumberAndIsReadFalse(plateNumber);
+        return unreadCountService.getUnreadCount(plateNumber);
+    }
+
+    /**
+     * Gets unread message counts per sending plate
+     */
+    public Map<String, Long> getUnreadCountsByPeer(String plateNumber) {
+        return unreadCountService.getUnreadCountsByPeer(plateNumber);
     }
 
-    private MessageResponse mapToResponse(Message message) {
+    public MessageResponse mapToResponse(Message message) {
         return MessageResponse.builder()
                 .id(message.getId())
                 .fromPlateNumber(message.getFromPlateNumber())
@@ -0,0 +1,183 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.config.MessagingProperties;
+import com.xmpp.plate.dto.MessageResponse;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.entity.OutboxMessage;
+import com.xmpp.plate.repository.MessageRepository;
+import com.xmpp.plate.repository.OutboxMessageRepository;
+import com.xmpp.plate.transport.XmppTransport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the message outbox and delivers queued messages over XMPP
+ * Entries are claimed in short transactions, sent outside any transaction,
+ * and retried with exponential backoff until they succeed or run out of attempts.
+ */
+@Service
+@ConditionalOnProperty(name = "messaging.outbox.enabled", havingValue = "true")
+@Slf4j
+public class OutboxDispatcher {
+
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private XmppTransport xmppTransport;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MessagingProperties messagingProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MessageBatchWriter messageBatchWriter;
+
+    /**
+     * Delivers due outbox entries, batch by batch, until the outbox has no full batch left
+     * Stops after max-batches-per-run so a backlog or a slow XMPP server does not hold the
+     * shared scheduler thread; the next poll picks up where this one stopped.
+     */
+    @Scheduled(fixedDelayString = "${messaging.outbox.poll-interval:500}")
+    public void dispatch() {
+        int batchSize = messagingProperties.getOutbox().getBatchSize();
+        int maxBatches = Math.max(1, messagingProperties.getOutbox().getMaxBatchesPerRun());
+        List<OutboxMessage> batch;
+        int batches = 0;
+        do {
+            batch = claimBatch(batchSize);
+            if (!batch.isEmpty()) {
+                deliver(batch);
+            }
+        } while (batch.size() == batchSize && ++batches < maxBatches);
+    }
+
+    /**
+     * Locks due entries and pushes their next attempt past the lease so no other dispatcher picks them up
+     */
+    private List<OutboxMessage> claimBatch(int batchSize) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxMessage> due = outboxRepository.findDueForUpdate(now, batchSize);
+            LocalDateTime leaseUntil = now.plus(Duration.ofMillis(messagingProperties.getOutbox().getLease()));
+            due.forEach(entry -> entry.setNextAttemptAt(leaseUntil));
+            return due;
+        });
+    }
+
+    private void deliver(List<OutboxMessage> batch) {
+        // Identity maps: entries are mutated below, so their equals/hashCode are not stable keys
+        Map<OutboxMessage, String> delivered = new IdentityHashMap<>();
+        Map<OutboxMessage, Exception> failed = new IdentityHashMap<>();
+
+        // Send outside any transaction so slow XMPP never holds a database connection
+        for (OutboxMessage entry : batch) {
+            try {
+                String stanzaId = xmppTransport.sendMessage(
+                    entry.getFromPlateNumber(),
+                    entry.getToPlateNumber(),
+                    entry.getMessageContent()
+                );
+                delivered.put(entry, stanzaId);
+            } catch (Exception e) {
+                failed.put(entry, e);
+            }
+        }
+
+        List<MessageResponse> responses = transactionTemplate.execute(status -> {
+            List<MessageResponse> sent = markDelivered(delivered);
+            scheduleRetries(failed);
+            return sent;
+        });
+
+        // Broadcast via WebSocket once delivery is recorded
+        responses.forEach(response -> messagingTemplate.convertAndSend(
+            "/topic/messages/" + response.getToPlateNumber(),
+            response
+        ));
+
+        log.debug("Outbox batch processed: {} delivered, {} failed", delivered.size(), failed.size());
+    }
+
+    private List<MessageResponse> markDelivered(Map<OutboxMessage, String> delivered) {
+        if (delivered.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, OutboxMessage> byMessageId = delivered.keySet().stream()
+                .collect(Collectors.toMap(OutboxMessage::getMessageId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> messages = messageRepository.findAllById(byMessageId.keySet());
+        List<MessageResponse> responses = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            message.setIsDelivered(true);
+            message.setDeliveredAt(now);
+            message.setXmppMessageId(delivered.get(byMessageId.get(message.getId())));
+            responses.add(messageService.mapToResponse(message));
+        }
+
+        // Lets the batch writer on any node recognize the echo of these messages
+        messageBatchWriter.claimStanzaKeys(messages);
+        outboxRepository.deleteAllInBatch(delivered.keySet());
+        return responses;
+    }
+
+    private void scheduleRetries(Map<OutboxMessage, Exception> failed) {
+        if (failed.isEmpty()) {
+            return;
+        }
+
+        MessagingProperties.Outbox config = messagingProperties.getOutbox();
+        LocalDateTime now = LocalDateTime.now();
+        failed.forEach((entry, error) -> {
+            int attempts = entry.getAttempts() + 1;
+            entry.setAttempts(attempts);
+            entry.setLastError(truncate(error.getMessage()));
+
+            if (attempts >= config.getMaxAttempts()) {
+                entry.setStatus("FAILED");
+                log.error("Giving up on message {} from {} to {} after {} attempts",
+                    entry.getMessageId(), entry.getFromPlateNumber(), entry.getToPlateNumber(), attempts, error);
+            } else {
+                long backoff = Math.min(config.getMaxBackoff(), config.getInitialBackoff() << Math.min(attempts - 1, 20));
+                entry.setNextAttemptAt(now.plus(Duration.ofMillis(backoff)));
+                log.warn("Delivery of message {} failed (attempt {}), retrying in {} ms: {}",
+                    entry.getMessageId(), attempts, backoff, error.getMessage());
+            }
+        });
+        outboxRepository.saveAll(failed.keySet());
+    }
+
+    private String truncate(String error) {
+        if (error == null || error.length() <= 500) {
+            return error;
+        }
+        return error.substring(0, 500);
+    }
+}
@@ -0,0 +1,124 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.event.VehicleChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Keeps vehicle caches consistent across nodes using PostgreSQL LISTEN/NOTIFY
+ * Local changes are announced after commit; announcements from any node invalidate the local cache.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.vehicle.cross-node-invalidation", havingValue = "true")
+@Slf4j
+public class PostgresVehicleCacheInvalidator {
+
+    private static final String CHANNEL = "vehicle_cache_invalidation";
+
+    @Autowired
+    private VehicleService vehicleService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private volatile boolean running = true;
+
+    private Thread listenerThread;
+
+    @PostConstruct
+    public void start() {
+        listenerThread = new Thread(this::listen, "vehicle-cache-invalidation");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    /**
+     * Announces a committed change to every node, including this one
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onVehicleChanged(VehicleChangedEvent event) {
+        // The original transaction is already committed; notify in a fresh one
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            requiresNew.executeWithoutResult(status ->
+                jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> { }, CHANNEL, event.getPlateNumber()));
+        } catch (Exception e) {
+            log.warn("Failed to broadcast vehicle cache invalidation for {}: {}", event.getPlateNumber(), e.getMessage());
+        }
+    }
+
+    /**
+     * Holds a dedicated connection outside the pool and applies incoming invalidations
+     */
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(
+                    dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(),
+                    dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for vehicle cache invalidations on channel {}", CHANNEL);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(5000);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            vehicleService.invalidateCachedVehicle(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                // Entries may have changed while disconnected; start from a clean cache
+                log.warn("Vehicle cache invalidation listener failed, retrying: {}", e.getMessage());
+                vehicleService.invalidateAllCachedVehicles();
+                sleepBeforeRetry();
+            }
+        }
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        listenerThread.interrupt();
+    }
+}
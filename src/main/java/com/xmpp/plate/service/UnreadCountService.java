@@ -0,0 +1,163 @@
+package com.xmpp.plate.service;
+
+import com.xmpp.plate.dto.UnreadCountUpdate;
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.entity.UnreadCounter;
+import com.xmpp.plate.event.UnreadCountChangedEvent;
+import com.xmpp.plate.repository.UnreadCounterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains per-plate and per-conversation unread counters
+ * Counters change by deltas in the same transaction as the messages they count,
+ * so reads are a primary-key lookup instead of a count over the messages table.
+ * Every change is pushed to /topic/unread/{plateNumber} after commit, with the counts the
+ * delta upsert returned.
+ */
+@Service
+@Slf4j
+public class UnreadCountService {
+
+    private static final Comparator<List<String>> PAIR_ORDER =
+            Comparator.<List<String>, String>comparing(pair -> pair.get(0)).thenComparing(pair -> pair.get(1));
+
+    // Adds delta to one counter, never below zero, and returns it with the plate's new total.
+    // The total's subquery sees the table as it was before this statement, so the changed row
+    // is left out of the sum and its new value added instead.
+    private static final String ADD_TO_COUNTER_SQL = "WITH changed AS ("
+            + " INSERT INTO unread_counters (plate_number, peer_plate_number, unread_count)"
+            + " VALUES (?, ?, GREATEST(?, 0))"
+            + " ON CONFLICT (plate_number, peer_plate_number)"
+            + " DO UPDATE SET unread_count = GREATEST(unread_counters.unread_count + ?, 0)"
+            + " RETURNING unread_count)"
+            + " SELECT changed.unread_count, changed.unread_count + (SELECT COALESCE(SUM(unread_count), 0)"
+            + " FROM unread_counters WHERE plate_number = ? AND peer_plate_number <> ?) FROM changed";
+
+    // Records that the counters have been seeded, so later starts skip the scan of messages
+    private static final String SEED_MARKER_TABLE = "CREATE TABLE IF NOT EXISTS unread_counters_seeded"
+            + " (seeded_at TIMESTAMP NOT NULL)";
+
+    @Autowired
+    private UnreadCounterRepository unreadCounterRepository;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Counts newly stored messages as unread for their recipients
+     */
+    @Transactional
+    public void messagesStored(Collection<Message> messages) {
+        // Counter rows are touched in a fixed order so concurrent batches cannot deadlock
+        Map<List<String>, Long> deltas = messages.stream()
+                .filter(message -> !Boolean.TRUE.equals(message.getIsRead()))
+                .collect(Collectors.groupingBy(
+                    message -> List.of(message.getToPlateNumber(), message.getFromPlateNumber()),
+                    () -> new TreeMap<>(PAIR_ORDER),
+                    Collectors.counting()));
+        deltas.forEach((pair, delta) -> addToCounter(pair.get(0), pair.get(1), delta));
+    }
+
+    /**
+     * Removes messages the plate has read from its counter for the peer that sent them
+     */
+    @Transactional
+    public void messagesRead(String plateNumber, String peerPlateNumber, long count) {
+        if (count > 0) {
+            addToCounter(plateNumber, peerPlateNumber, -count);
+        }
+    }
+
+    /**
+     * Gets the number of unread messages for a plate from all peers
+     */
+    public long getUnreadCount(String plateNumber) {
+        return unreadCounterRepository.sumByPlateNumber(plateNumber);
+    }
+
+    /**
+     * Gets the number of unread messages for a plate, per peer that has any
+     */
+    public Map<String, Long> getUnreadCountsByPeer(String plateNumber) {
+        return unreadCounterRepository.findByPlateNumberAndUnreadCountGreaterThan(plateNumber, 0).stream()
+                .collect(Collectors.toMap(UnreadCounter::getPeerPlateNumber, UnreadCounter::getUnreadCount));
+    }
+
+    /**
+     * Recomputes every counter from the messages table
+     */
+    @Transactional
+    public void rebuild() {
+        unreadCounterRepository.lockForRebuild();
+        unreadCounterRepository.deleteAllInBatch();
+        int counters = unreadCounterRepository.insertFromMessages();
+        log.info("Rebuilt {} unread counters from message history", counters);
+    }
+
+    /**
+     * Seeds the counters on first start after upgrade, when messages predate the counter table
+     * Runs once per database; the marker row keeps an empty counter table from rescanning messages.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedIfEmpty() {
+        jdbcTemplate.execute(SEED_MARKER_TABLE);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM unread_counters_seeded)", Boolean.class))) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (unreadCounterRepository.count() == 0) {
+                rebuild();
+            }
+            jdbcTemplate.update("INSERT INTO unread_counters_seeded (seeded_at) VALUES (now())");
+        });
+    }
+
+    /**
+     * Pushes the committed counts to the plate's subscribers
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUnreadCountChanged(UnreadCountChangedEvent event) {
+        UnreadCountUpdate update = UnreadCountUpdate.builder()
+                .plateNumber(event.getPlateNumber())
+                .peerPlateNumber(event.getPeerPlateNumber())
+                .conversationUnread(event.getConversationUnread())
+                .totalUnread(event.getTotalUnread())
+                .build();
+        messagingTemplate.convertAndSend("/topic/unread/" + event.getPlateNumber(), update);
+    }
+
+    private void addToCounter(String plateNumber, String peerPlateNumber, long delta) {
+        jdbcTemplate.query(ADD_TO_COUNTER_SQL, rs -> {
+            eventPublisher.publishEvent(new UnreadCountChangedEvent(this, plateNumber, peerPlateNumber,
+                rs.getLong(1), rs.getLong(2)));
+        }, plateNumber, peerPlateNumber, delta, delta, plateNumber, peerPlateNumber);
+    }
+}
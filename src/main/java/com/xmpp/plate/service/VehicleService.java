@@ -1,25 +1,37 @@
 package com.xmpp.plate.service;
 
+import com.xmpp.plate.config.CacheProperties;
+import com.xmpp.plate.dto.CacheStats;
 import com.xmpp.plate.dto.VehicleRequest;
 import com.xmpp.plate.dto.VehicleResponse;
 import com.xmpp.plate.entity.VehicleXmppMapping;
+import com.xmpp.plate.event.VehicleChangedEvent;
 import com.xmpp.plate.exception.VehicleAlreadyExistsException;
 import com.xmpp.plate.exception.VehicleNotFoundException;
 import com.xmpp.plate.repository.VehicleXmppMappingRepository;
+import com.xmpp.plate.util.BoundedTtlCache;
 import com.xmpp.plate.util.EncryptionUtil;
 import com.xmpp.plate.util.PasswordGenerator;
 import com.xmpp.plate.config.XmppConnectionManager;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Service for managing vehicle registrations
+ * Lookups by plate are served from a bounded, expiring read-through cache.
  */
 @Service
 @Slf4j
@@ -37,6 +49,21 @@ public class VehicleService {
     @Autowired
     private XmppConnectionManager connectionManager;
 
+    @Autowired
+    private CacheProperties cacheProperties;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Cache of plateNumber -> mapping; entries are read-only snapshots
+    private BoundedTtlCache<String, VehicleXmppMapping> vehicleCache;
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Vehicle config = cacheProperties.getVehicle();
+        vehicleCache = new BoundedTtlCache<>("vehicles", config.getMaxSize(), config.getTtl());
+    }
+
     /**
      * Registers a new vehicle
      */
@@ -71,6 +98,7 @@ public class VehicleService {
                 .build();
 
         mapping = vehicleRepository.save(mapping);
+        vehicleChanged(request.getPlateNumber());
 
         log.info("Vehicle registered successfully: {}", request.getPlateNumber());
 
@@ -103,6 +131,7 @@ public class VehicleService {
 
         // Delete from database
         vehicleRepository.delete(mapping);
+        vehicleChanged(plateNumber);
 
         log.info("Vehicle deleted successfully: {}", plateNumber);
     }
@@ -111,11 +140,17 @@ public class VehicleService {
      * Gets vehicle by plate number
      */
     public VehicleResponse getVehicle(String plateNumber) {
-        VehicleXmppMapping mapping = vehicleRepository.findByPlateNumber(plateNumber)
-                .orElseThrow(() -> new VehicleNotFoundException(
-                    "Vehicle with plate number " + plateNumber + " not found"
-                ));
-        return mapToResponse(mapping);
+        return mapToResponse(findMapping(plateNumber));
+    }
+
+    /**
+     * Returns which of the given plates are registered, using a single query
+     */
+    public Set<String> findRegisteredPlates(Collection<String> plateNumbers) {
+        if (plateNumbers.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(vehicleRepository.findPlateNumbersIn(plateNumbers));
     }
 
     /**
@@ -131,11 +166,8 @@ public class VehicleService {
      * Gets decrypted XMPP password for a vehicle
      */
     public String getXmppPassword(String plateNumber) {
-        VehicleXmppMapping mapping = vehicleRepository.findByPlateNumber(plateNumber)
-                .orElseThrow(() -> new VehicleNotFoundException(
-                    "Vehicle with plate number " + plateNumber + " not found"
-                ));
-        return encryptionUtil.decrypt(mapping.getXmppPasswordEncrypted());
+        VehicleXmppMapping mapping = findMapping(plateNumber);
+        return encryptionUtil.decryptCredential(mapping.getXmppPasswordEncrypted());
     }
 
     /**
@@ -149,6 +181,53 @@ public class VehicleService {
                 ));
         mapping.setLastConnectedAt(LocalDateTime.now());
         vehicleRepository.save(mapping);
+        vehicleChanged(plateNumber);
+    }
+
+    /**
+     * Drops a plate from the local cache
+     * Also the entry point for invalidations received from other nodes.
+     */
+    public void invalidateCachedVehicle(String plateNumber) {
+        vehicleCache.invalidate(plateNumber);
+    }
+
+    /**
+     * Drops every cached vehicle
+     */
+    public void invalidateAllCachedVehicles() {
+        vehicleCache.invalidateAll();
+    }
+
+    /**
+     * Invalidates again once the change is committed, so a concurrent reader
+     * cannot re-cache the pre-commit row
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onVehicleChanged(VehicleChangedEvent event) {
+        invalidateCachedVehicle(event.getPlateNumber());
+    }
+
+    /**
+     * Gets vehicle cache hit/miss statistics
+     */
+    public CacheStats getCacheStats() {
+        return vehicleCache.getStats();
+    }
+
+    private VehicleXmppMapping findMapping(String plateNumber) {
+        VehicleXmppMapping mapping = cacheProperties.getVehicle().isEnabled()
+                ? vehicleCache.get(plateNumber, plate -> vehicleRepository.findByPlateNumber(plate).orElse(null))
+                : vehicleRepository.findByPlateNumber(plateNumber).orElse(null);
+        if (mapping == null) {
+            throw new VehicleNotFoundException("Vehicle with plate number " + plateNumber + " not found");
+        }
+        return mapping;
+    }
+
+    private void vehicleChanged(String plateNumber) {
+        invalidateCachedVehicle(plateNumber);
+        eventPublisher.publishEvent(new VehicleChangedEvent(this, plateNumber));
     }
 
     private VehicleResponse mapToResponse(VehicleXmppMapping mapping) {
@@ -0,0 +1,119 @@
+package com.xmpp.plate.transport;
+
+import com.xmpp.plate.config.MessagingMetrics;
+import com.xmpp.plate.config.XmppConnectionManager;
+import com.xmpp.plate.service.VehicleService;
+import lombok.extern.slf4j.Slf4j;
+import org.jivesoftware.smack.chat2.Chat;
+import org.jivesoftware.smack.chat2.ChatManager;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.tcp.XMPPTCPConnection;
+import org.jivesoftware.smackx.chatstates.ChatState;
+import org.jivesoftware.smackx.chatstates.packet.ChatStateExtension;
+import org.jxmpp.jid.EntityBareJid;
+import org.jxmpp.jid.impl.JidCreate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Transport that sends every stanza over the plate's own logged-in session
+ */
+@Component
+@ConditionalOnProperty(name = "xmpp.transport.mode", havingValue = "client", matchIfMissing = true)
+@Slf4j
+public class ClientXmppTransport implements XmppTransport {
+
+    @Autowired
+    private XmppConnectionManager connectionManager;
+
+    @Autowired
+    private VehicleService vehicleService;
+
+    @Autowired
+    private SentStanzaTracker sentStanzaTracker;
+
+    @Autowired
+    private MessagingMetrics messagingMetrics;
+
+    @Value("${xmpp.domain}")
+    private String xmppDomain;
+
+    @Override
+    public String sendMessage(String fromPlateNumber, String toPlateNumber, String body) throws Exception {
+        XMPPTCPConnection connection = messagingMetrics.sendStage(MessagingMetrics.ACQUIRE)
+                .recordCallable(() -> getConnection(fromPlateNumber));
+
+        // Create recipient JID
+        EntityBareJid recipientJid = JidCreate.entityBareFrom(toPlateNumber + "@" + xmppDomain);
+
+        // Get chat manager and create chat
+        ChatManager chatManager = ChatManager.getInstanceFor(connection);
+        Chat chat = chatManager.chatWith(recipientJid);
+
+        // Create and send XMPP message
+        Message xmppMessage = connection.getStanzaFactory()
+                .buildMessageStanza()
+                .to(recipientJid)
+                .setBody(body)
+                .build();
+
+        sentStanzaTracker.sending(xmppMessage.getStanzaId());
+        messagingMetrics.sendStage(MessagingMetrics.SEND).recordCallable(() -> {
+            chat.send(xmppMessage);
+            return null;
+        });
+        return xmppMessage.getStanzaId();
+    }
+
+    @Override
+    public void sendMessages(String fromPlateNumber, List<OutboundMessage> messages) throws Exception {
+        // One password lookup and session for the whole batch
+        XMPPTCPConnection connection = getConnection(fromPlateNumber);
+        ChatManager chatManager = ChatManager.getInstanceFor(connection);
+
+        for (OutboundMessage outbound : messages) {
+            try {
+                EntityBareJid recipientJid = JidCreate.entityBareFrom(outbound.getToPlateNumber() + "@" + xmppDomain);
+                Message xmppMessage = connection.getStanzaFactory()
+                        .buildMessageStanza()
+                        .to(recipientJid)
+                        .setBody(outbound.getBody())
+                        .build();
+
+                // Queued on the connection's writer; no per-message round trip
+                sentStanzaTracker.sending(xmppMessage.getStanzaId());
+                chatManager.chatWith(recipientJid).send(xmppMessage);
+                outbound.setStanzaId(xmppMessage.getStanzaId());
+            } catch (Exception e) {
+                outbound.setError(e);
+            }
+        }
+    }
+
+    @Override
+    public void sendChatState(String fromPlateNumber, String toPlateNumber, ChatState chatState) throws Exception {
+        XMPPTCPConnection connection = getConnection(fromPlateNumber);
+
+        // Create recipient JID
+        EntityBareJid recipientJid = JidCreate.entityBareFrom(toPlateNumber + "@" + xmppDomain);
+
+        // Create a message carrying the chat state
+        Message message = connection.getStanzaFactory()
+                .buildMessageStanza()
+                .to(recipientJid)
+                .addExtension(new ChatStateExtension(chatState))
+                .build();
+
+        connection.sendStanza(message);
+    }
+
+    private XMPPTCPConnection getConnection(String plateNumber) throws Exception {
+        // Get XMPP password and pooled connection for the sender
+        String password = vehicleService.getXmppPassword(plateNumber);
+        return connectionManager.getConnection(plateNumber, password);
+    }
+}
@@ -0,0 +1,430 @@
+package com.xmpp.plate.transport;
+
+import com.xmpp.plate.config.MessagingMetrics;
+import com.xmpp.plate.config.XmppProperties;
+import com.xmpp.plate.exception.XmppOperationException;
+import com.xmpp.plate.listener.InboundMessage;
+import com.xmpp.plate.listener.InboundMessagePipeline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.packet.MessageBuilder;
+import org.jivesoftware.smack.packet.XmlEnvironment;
+import org.jivesoftware.smack.packet.id.StandardStanzaIdSource;
+import org.jivesoftware.smack.util.PacketParserUtils;
+import org.jivesoftware.smack.xml.SmackXmlParser;
+import org.jivesoftware.smack.xml.XmlPullParser;
+import org.jivesoftware.smackx.chatstates.ChatState;
+import org.jivesoftware.smackx.chatstates.packet.ChatStateExtension;
+import org.jxmpp.jid.EntityBareJid;
+import org.jxmpp.jid.impl.JidCreate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transport that multiplexes all plates over a few XEP-0114 external component connections
+ * Each stanza is stamped with from=&lt;plate&gt;@&lt;component domain&gt;, so no per-plate login is needed.
+ * Chat messages the server routes to &lt;plate&gt;@&lt;component domain&gt; go to the inbound pipeline.
+ */
+@Component
+@ConditionalOnProperty(name = "xmpp.transport.mode", havingValue = "component")
+@DependsOn("xmppConnectionManager")
+@Slf4j
+public class ComponentXmppTransport implements XmppTransport {
+
+    static final String COMPONENT_NAMESPACE = "jabber:component:accept";
+    static final String STREAM_NAMESPACE = "http://etherx.jabber.org/streams";
+
+    private static final XmlEnvironment COMPONENT_ENVIRONMENT = new XmlEnvironment(COMPONENT_NAMESPACE);
+
+    // Write buffer per gateway connection; batches are flushed before it would fill
+    private static final int WRITE_BUFFER_CHARS = 8192;
+
+    @Autowired
+    private XmppProperties xmppProperties;
+
+    @Autowired
+    private MessagingMetrics messagingMetrics;
+
+    // Looked up per message; the pipeline depends on services that depend on this transport
+    @Autowired
+    private ObjectProvider<InboundMessagePipeline> inboundMessagePipeline;
+
+    private String componentDomain;
+
+    private GatewayConnection[] connections;
+
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        XmppProperties.Transport.Component component = xmppProperties.getTransport().getComponent();
+        if (component.getSecret() == null || component.getSecret().isBlank()) {
+            throw new IllegalStateException("xmpp.transport.component.secret is required in component mode");
+        }
+        componentDomain = component.getSubdomain() + "." + xmppProperties.getDomain();
+
+        // Gateway connections are opened lazily on first use
+        connections = new GatewayConnection[Math.max(1, component.getConnections())];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new GatewayConnection(i);
+        }
+        log.info("XMPP component transport configured for domain {} with {} gateway connections",
+                componentDomain, connections.length);
+    }
+
+    @Override
+    public String sendMessage(String fromPlateNumber, String toPlateNumber, String body) throws Exception {
+        Message message = MessageBuilder.buildMessage(StandardStanzaIdSource.DEFAULT.getNewStanzaId())
+                .from(JidCreate.entityBareFrom(fromPlateNumber + "@" + componentDomain))
+                .to(JidCreate.entityBareFrom(toPlateNumber + "@" + xmppProperties.getDomain()))
+                .ofType(Message.Type.chat)
+                .setBody(body)
+                .build();
+
+        messagingMetrics.sendStage(MessagingMetrics.SEND).recordCallable(() -> {
+            send(message);
+            return null;
+        });
+        return message.getStanzaId();
+    }
+
+    @Override
+    public void sendMessages(String fromPlateNumber, List<OutboundMessage> messages) throws Exception {
+        EntityBareJid fromJid = JidCreate.entityBareFrom(fromPlateNumber + "@" + componentDomain);
+
+        List<String> stanzas = new ArrayList<>(messages.size());
+        List<OutboundMessage> built = new ArrayList<>(messages.size());
+        for (OutboundMessage outbound : messages) {
+            try {
+                Message message = MessageBuilder.buildMessage(StandardStanzaIdSource.DEFAULT.getNewStanzaId())
+                        .from(fromJid)
+                        .to(JidCreate.entityBareFrom(outbound.getToPlateNumber() + "@" + xmppProperties.getDomain()))
+                        .ofType(Message.Type.chat)
+                        .setBody(outbound.getBody())
+                        .build();
+                stanzas.add(message.toXML(COMPONENT_ENVIRONMENT).toString());
+                outbound.setStanzaId(message.getStanzaId());
+                built.add(outbound);
+            } catch (Exception e) {
+                outbound.setError(e);
+            }
+        }
+
+        // Write the whole batch on one gateway connection with a single flush
+        try {
+            nextConnection().sendAll(stanzas);
+        } catch (GatewayWriteException e) {
+            // Stanzas flushed before the failure were sent; failing them too would make callers resend them
+            built.subList(e.getFlushed(), built.size()).forEach(outbound -> outbound.setError(e));
+        }
+    }
+
+    @Override
+    public void sendChatState(String fromPlateNumber, String toPlateNumber, ChatState chatState) throws Exception {
+        Message message = MessageBuilder.buildMessage(StandardStanzaIdSource.DEFAULT.getNewStanzaId())
+                .from(JidCreate.entityBareFrom(fromPlateNumber + "@" + componentDomain))
+                .to(JidCreate.entityBareFrom(toPlateNumber + "@" + xmppProperties.getDomain()))
+                .ofType(Message.Type.chat)
+                .addExtension(new ChatStateExtension(chatState))
+                .build();
+
+        send(message);
+    }
+
+    /**
+     * Writes a stanza on the next gateway connection (round robin)
+     */
+    private void send(Message message) throws IOException {
+        nextConnection().sendAll(List.of(message.toXML(COMPONENT_ENVIRONMENT).toString()));
+    }
+
+    /**
+     * Hands a chat message addressed to a plate on the component domain to the inbound pipeline
+     */
+    private void receive(Message message) {
+        if (message.getBody() == null || message.getType() == Message.Type.error
+                || message.getFrom() == null || message.getFrom().getLocalpartOrNull() == null
+                || message.getTo() == null || message.getTo().getLocalpartOrNull() == null) {
+            return;
+        }
+        inboundMessagePipeline.getObject().submit(InboundMessage.builder()
+                .fromPlateNumber(message.getFrom().getLocalpartOrNull().toString())
+                .toPlateNumber(message.getTo().getLocalpartOrNull().toString())
+                .body(message.getBody())
+                .stanzaId(message.getStanzaId())
+                .receivedAt(LocalDateTime.now())
+                .build());
+    }
+
+    private GatewayConnection nextConnection() {
+        return connections[Math.floorMod(nextConnection.getAndIncrement(), connections.length)];
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Closing XMPP component gateway connections");
+        for (GatewayConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Computes the XEP-0114 handshake value: hex(SHA-1(streamId + secret))
+     */
+    static String handshakeDigest(String streamId, String secret) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((streamId + secret).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    /**
+     * A batch write that failed after its first stanzas were flushed
+     */
+    static final class GatewayWriteException extends IOException {
+
+        private final int flushed;
+
+        GatewayWriteException(int flushed, IOException cause) {
+            super(cause.getMessage(), cause);
+            this.flushed = flushed;
+        }
+
+        /**
+         * Number of leading stanzas of the batch that reached the gateway
+         */
+        int getFlushed() {
+            return flushed;
+        }
+    }
+
+    /**
+     * One authenticated component stream, reconnected on demand
+     */
+    private final class GatewayConnection {
+
+        private final int index;
+        // A lock rather than synchronized, so virtual threads blocked on socket writes do not pin their carrier
+        private final ReentrantLock lock = new ReentrantLock();
+        private Socket socket;
+        private Writer writer;
+
+        // Stanzas of the current batch known to have been flushed to the socket
+        private int flushed;
+
+        private GatewayConnection(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Writes the stanzas, retrying the unflushed rest once on a fresh stream
+         * @throws GatewayWriteException if the retry fails too; it tells how many stanzas were flushed
+         */
+        void sendAll(List<String> stanzas) throws GatewayWriteException {
+            lock.lock();
+            try {
+                flushed = 0;
+                try {
+                    ensureConnected();
+                    write(stanzas);
+                } catch (IOException e) {
+                    // The stream may have been closed by the server
+                    log.warn("Gateway connection {} failed after {} of {} stanzas, reconnecting: {}",
+                            index, flushed, stanzas.size(), e.getMessage());
+                    close();
+                    ensureConnected();
+                    write(stanzas);
+                }
+            } catch (IOException e) {
+                throw new GatewayWriteException(flushed, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Writes the stanzas not yet flushed, flushing early whenever the next one would not fit the buffer
+         * The buffer then never spills on its own, so a failure only ever affects unflushed stanzas.
+         */
+        private void write(List<String> stanzas) throws IOException {
+            int buffered = 0;
+            for (int i = flushed; i < stanzas.size(); i++) {
+                String stanza = stanzas.get(i);
+                if (buffered > 0 && buffered + stanza.length() > WRITE_BUFFER_CHARS) {
+                    writer.flush();
+                    flushed = i;
+                    buffered = 0;
+                }
+                writer.write(stanza);
+                buffered += stanza.length();
+            }
+            writer.flush();
+            flushed = stanzas.size();
+        }
+
+        private void ensureConnected() throws IOException {
+            if (socket != null && !socket.isClosed()) {
+                return;
+            }
+
+            XmppProperties.Transport.Component component = xmppProperties.getTransport().getComponent();
+            String host = component.getHost() != null ? component.getHost() : xmppProperties.getHost();
+            int timeout = xmppProperties.getConnection().getTimeout();
+
+            Socket newSocket = new Socket();
+            try {
+                newSocket.connect(new InetSocketAddress(host, component.getPort()), timeout);
+                newSocket.setSoTimeout(timeout);
+                // Room for a full char buffer at up to three UTF-8 bytes per char, so only a flush reaches the socket
+                Writer newWriter = new BufferedWriter(new OutputStreamWriter(
+                        new BufferedOutputStream(newSocket.getOutputStream(), WRITE_BUFFER_CHARS * 3),
+                        StandardCharsets.UTF_8), WRITE_BUFFER_CHARS);
+
+                // Open stream first: the parser reads the server's reply as soon as it is created
+                newWriter.write("<?xml version='1.0'?><stream:stream xmlns='" + COMPONENT_NAMESPACE
+                        + "' xmlns:stream='" + STREAM_NAMESPACE + "' to='" + componentDomain + "'>");
+                newWriter.flush();
+                XmlPullParser parser = SmackXmlParser.newXmlParser(
+                        new InputStreamReader(newSocket.getInputStream(), StandardCharsets.UTF_8));
+                String streamId = readStreamId(parser);
+
+                // Authenticate with the shared secret
+                newWriter.write("<handshake>" + handshakeDigest(streamId, component.getSecret()) + "</handshake>");
+                newWriter.flush();
+                awaitHandshake(parser);
+
+                newSocket.setSoTimeout(0);
+                socket = newSocket;
+                writer = newWriter;
+                startReader(newSocket, parser);
+                log.info("Gateway connection {} established to {}:{} as {}",
+                        index, host, component.getPort(), componentDomain);
+            } catch (IOException e) {
+                closeQuietly(newSocket);
+                throw e;
+            } catch (Exception e) {
+                closeQuietly(newSocket);
+                throw new IOException("Component handshake failed: " + e.getMessage(), e);
+            }
+        }
+
+        private String readStreamId(XmlPullParser parser) throws Exception {
+            while (true) {
+                XmlPullParser.Event event = parser.next();
+                if (event == XmlPullParser.Event.START_ELEMENT && "stream".equals(parser.getName())) {
+                    String streamId = parser.getAttributeValue("id");
+                    if (streamId == null) {
+                        throw new XmppOperationException("Component stream header has no id");
+                    }
+                    return streamId;
+                }
+                if (event == XmlPullParser.Event.END_DOCUMENT) {
+                    throw new IOException("Stream closed before header");
+                }
+            }
+        }
+
+        private void awaitHandshake(XmlPullParser parser) throws Exception {
+            while (true) {
+                XmlPullParser.Event event = parser.next();
+                if (event == XmlPullParser.Event.START_ELEMENT) {
+                    if ("handshake".equals(parser.getName())) {
+                        return;
+                    }
+                    if ("error".equals(parser.getName())) {
+                        throw new XmppOperationException("Component handshake rejected by server");
+                    }
+                }
+                if (event == XmlPullParser.Event.END_DOCUMENT) {
+                    throw new IOException("Stream closed during handshake");
+                }
+            }
+        }
+
+        /**
+         * Reads inbound stanzas, passing chat messages on, so the server never blocks on a full socket buffer
+         */
+        private void startReader(Socket readerSocket, XmlPullParser parser) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!readerSocket.isClosed()) {
+                        XmlPullParser.Event event = parser.next();
+                        if (event == XmlPullParser.Event.END_DOCUMENT) {
+                            break;
+                        }
+                        if (event == XmlPullParser.Event.START_ELEMENT && parser.getDepth() == 2) {
+                            Object stanza = PacketParserUtils.parseStanza(parser, COMPONENT_ENVIRONMENT);
+                            log.debug("Gateway connection {} received: {}", index, stanza);
+                            if (stanza instanceof Message message) {
+                                receive(message);
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    if (!readerSocket.isClosed()) {
+                        log.warn("Gateway connection {} reader stopped: {}", index, e.getMessage());
+                    }
+                } finally {
+                    closeQuietly(readerSocket);
+                }
+            }, "xmpp-gateway-reader-" + index);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                if (socket != null) {
+                    try {
+                        if (!socket.isClosed()) {
+                            writer.write("</stream:stream>");
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        log.debug("Error closing gateway stream {}: {}", index, e.getMessage());
+                    }
+                    closeQuietly(socket);
+                    socket = null;
+                    writer = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void closeQuietly(Socket target) {
+            try {
+                target.close();
+            } catch (IOException ignored) {
+                // Nothing left to release
+            }
+        }
+    }
+}
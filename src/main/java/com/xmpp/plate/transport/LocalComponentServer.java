@@ -0,0 +1,160 @@
+package com.xmpp.plate.transport;
+
+import com.xmpp.plate.config.XmppProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jivesoftware.smack.packet.Stanza;
+import org.jivesoftware.smack.packet.XmlEnvironment;
+import org.jivesoftware.smack.util.PacketParserUtils;
+import org.jivesoftware.smack.xml.SmackXmlParser;
+import org.jivesoftware.smack.xml.XmlPullParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process XEP-0114 server used as a stand-in for Openfire in component mode
+ * Accepts component handshakes on the loopback interface and logs every stanza it receives.
+ * Enable with xmpp.transport.component.embedded-server=true (development and testing only).
+ */
+@Component
+@ConditionalOnProperty(name = "xmpp.transport.component.embedded-server", havingValue = "true")
+@DependsOn("xmppConnectionManager")
+@Slf4j
+public class LocalComponentServer {
+
+    private static final XmlEnvironment COMPONENT_ENVIRONMENT =
+            new XmlEnvironment(ComponentXmppTransport.COMPONENT_NAMESPACE);
+
+    @Autowired
+    private XmppProperties xmppProperties;
+
+    private ServerSocket serverSocket;
+
+    private final ExecutorService sessions = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "local-component-session");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong receivedStanzas = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        int port = xmppProperties.getTransport().getComponent().getPort();
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        sessions.submit(this::acceptLoop);
+        log.info("Local component server listening on {}:{}", serverSocket.getInetAddress().getHostAddress(), port);
+    }
+
+    /**
+     * Gets the number of stanzas accepted since startup
+     */
+    public long getReceivedStanzaCount() {
+        return receivedStanzas.get();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.submit(() -> handleSession(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.error("Local component server accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void handleSession(Socket socket) {
+        XmppProperties.Transport.Component component = xmppProperties.getTransport().getComponent();
+        try (socket) {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            XmlPullParser parser = SmackXmlParser.newXmlParser(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            // Wait for the component's stream header and answer with our own
+            String domain = null;
+            while (domain == null) {
+                XmlPullParser.Event event = parser.next();
+                if (event == XmlPullParser.Event.END_DOCUMENT) {
+                    return;
+                }
+                if (event == XmlPullParser.Event.START_ELEMENT && "stream".equals(parser.getName())) {
+                    domain = parser.getAttributeValue("to");
+                }
+            }
+            String streamId = UUID.randomUUID().toString();
+            writer.write("<?xml version='1.0'?><stream:stream xmlns:stream='" + ComponentXmppTransport.STREAM_NAMESPACE
+                    + "' xmlns='" + ComponentXmppTransport.COMPONENT_NAMESPACE
+                    + "' from='" + domain + "' id='" + streamId + "'>");
+            writer.flush();
+
+            // Verify the handshake digest
+            while (parser.next() != XmlPullParser.Event.START_ELEMENT || !"handshake".equals(parser.getName())) {
+                if (parser.getEventType() == XmlPullParser.Event.END_DOCUMENT) {
+                    return;
+                }
+            }
+            String expected = ComponentXmppTransport.handshakeDigest(streamId, component.getSecret());
+            if (!expected.equalsIgnoreCase(parser.nextText().trim())) {
+                log.warn("Local component server rejected handshake for {}", domain);
+                writer.write("<stream:error><not-authorized xmlns='urn:ietf:params:xml:ns:xmpp-streams'/>"
+                        + "</stream:error></stream:stream>");
+                writer.flush();
+                return;
+            }
+            writer.write("<handshake/>");
+            writer.flush();
+            log.info("Local component server accepted component {}", domain);
+
+            // Consume stanzas until the component closes its stream
+            while (true) {
+                XmlPullParser.Event event = parser.next();
+                if (event == XmlPullParser.Event.END_DOCUMENT
+                        || (event == XmlPullParser.Event.END_ELEMENT && "stream".equals(parser.getName()))) {
+                    break;
+                }
+                if (event == XmlPullParser.Event.START_ELEMENT && parser.getDepth() == 2) {
+                    Stanza stanza = PacketParserUtils.parseStanza(parser, COMPONENT_ENVIRONMENT);
+                    receivedStanzas.incrementAndGet();
+                    log.debug("Local component server received stanza from {} to {}: {}",
+                            stanza.getFrom(), stanza.getTo(), stanza);
+                }
+            }
+            writer.write("</stream:stream>");
+            writer.flush();
+        } catch (Exception e) {
+            if (!serverSocket.isClosed()) {
+                log.warn("Local component session ended: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.debug("Error closing local component server: {}", e.getMessage());
+        }
+        sessions.shutdownNow();
+        log.info("Local component server stopped after {} stanzas", receivedStanzas.get());
+    }
+}
@@ -0,0 +1,20 @@
+package com.xmpp.plate.transport;
+
+import lombok.Data;
+
+/**
+ * One message in a multi-message send
+ * The transport fills in either stanzaId or error.
+ */
+@Data
+public class OutboundMessage {
+
+    private final String toPlateNumber;
+    private final String body;
+    private String stanzaId;
+    private Exception error;
+
+    public boolean isSent() {
+        return error == null;
+    }
+}
@@ -0,0 +1,29 @@
+package com.xmpp.plate.transport;
+
+import com.xmpp.plate.util.BoundedTtlCache;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers ids of chat messages this node sent recently
+ * When the recipient's session is pooled on the same node, the message comes back in
+ * through the inbound listener; it is already stored by the sending path and must be skipped.
+ */
+@Component
+public class SentStanzaTracker {
+
+    private final BoundedTtlCache<String, Boolean> recentlySent =
+            new BoundedTtlCache<>("sent-stanzas", 100000, 120000);
+
+    /**
+     * Records a stanza id before the stanza is written, so the echo can never arrive first
+     */
+    public void sending(String stanzaId) {
+        if (stanzaId != null) {
+            recentlySent.put(stanzaId, Boolean.TRUE);
+        }
+    }
+
+    public boolean wasSentHere(String stanzaId) {
+        return stanzaId != null && recentlySent.getIfPresent(stanzaId) != null;
+    }
+}
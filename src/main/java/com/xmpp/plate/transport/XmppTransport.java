@@ -0,0 +1,29 @@
+package com.xmpp.plate.transport;
+
+import org.jivesoftware.smackx.chatstates.ChatState;
+
+import java.util.List;
+
+/**
+ * Outbound XMPP transport used by the messaging services
+ * Implementations are selected with xmpp.transport.mode
+ */
+public interface XmppTransport {
+
+    /**
+     * Sends a chat message on behalf of a plate and returns the stanza id
+     */
+    String sendMessage(String fromPlateNumber, String toPlateNumber, String body) throws Exception;
+
+    /**
+     * Sends several chat messages on behalf of one plate over a single session
+     * Stanzas are written back to back; each message records its own stanza id or error.
+     * Throws only if the sender's session itself cannot be obtained.
+     */
+    void sendMessages(String fromPlateNumber, List<OutboundMessage> messages) throws Exception;
+
+    /**
+     * Sends a chat state notification on behalf of a plate
+     */
+    void sendChatState(String fromPlateNumber, String toPlateNumber, ChatState chatState) throws Exception;
+}
@@ -0,0 +1,408 @@
+package com.xmpp.plate.util;
+
+import com.xmpp.plate.entity.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable, memory-mapped file of archived messages in (timestamp, id) order
+ * Layout: header, deflate-compressed blocks of up to BLOCK_SIZE messages, block table with the
+ * key range of each block, plate and conversation indexes listing the blocks that hold them,
+ * and a trailer pointing at the table. Only the table and indexes live on the heap; blocks
+ * are inflated from the mapping when a lookup needs them.
+ */
+public final class ArchiveSegment {
+
+    public static final String EXTENSION = ".seg";
+
+    private static final int MAGIC = 0x4d534753;
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 256;
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final Block[] blocks;
+    private final Map<String, int[]> plateIndex;
+    private final Map<String, int[]> conversationIndex;
+    private final int messageCount;
+
+    private ArchiveSegment(Path path, MappedByteBuffer buffer, Block[] blocks,
+                           Map<String, int[]> plateIndex, Map<String, int[]> conversationIndex) {
+        this.path = path;
+        this.buffer = buffer;
+        this.blocks = blocks;
+        this.plateIndex = plateIndex;
+        this.conversationIndex = conversationIndex;
+        int count = 0;
+        for (Block block : blocks) {
+            count += block.count;
+        }
+        this.messageCount = count;
+    }
+
+    /**
+     * Writes messages, already in (timestamp, id) order and with conversation keys set, to a new
+     * segment in the directory; the file only appears under its final name once fully synced
+     */
+    public static ArchiveSegment write(Path directory, List<Message> messages) throws IOException {
+        Message first = messages.get(0);
+        String name = "messages-" + first.getTimestamp().format(NAME_FORMAT) + "-" + first.getId();
+        Path target = directory.resolve(name + EXTENSION);
+        Path temp = directory.resolve(name + ".tmp");
+
+        List<long[]> table = new ArrayList<>();
+        List<MessageCursor[]> ranges = new ArrayList<>();
+        Map<String, TreeSet<Integer>> plates = new TreeMap<>();
+        Map<String, TreeSet<Integer>> conversations = new TreeMap<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                for (int start = 0; start < messages.size(); start += BLOCK_SIZE) {
+                    List<Message> chunk = messages.subList(start, Math.min(start + BLOCK_SIZE, messages.size()));
+                    int blockNumber = table.size();
+
+                    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                    DataOutputStream records = new DataOutputStream(raw);
+                    for (Message message : chunk) {
+                        writeMessage(records, message);
+                        plates.computeIfAbsent(message.getFromPlateNumber(), k -> new TreeSet<>()).add(blockNumber);
+                        plates.computeIfAbsent(message.getToPlateNumber(), k -> new TreeSet<>()).add(blockNumber);
+                        conversations.computeIfAbsent(message.getConversationKey(), k -> new TreeSet<>()).add(blockNumber);
+                    }
+                    byte[] compressed = deflate(deflater, raw.toByteArray());
+
+                    table.add(new long[] {out.size(), compressed.length, raw.size(), chunk.size()});
+                    ranges.add(new MessageCursor[] {MessageCursor.of(chunk.get(0)), MessageCursor.of(chunk.get(chunk.size() - 1))});
+                    out.write(compressed);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            long tableOffset = out.size();
+            out.writeInt(table.size());
+            for (int i = 0; i < table.size(); i++) {
+                long[] entry = table.get(i);
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+                out.writeInt((int) entry[3]);
+                writeCursor(out, ranges.get(i)[0]);
+                writeCursor(out, ranges.get(i)[1]);
+            }
+            writeIndex(out, plates);
+            writeIndex(out, conversations);
+            out.writeLong(tableOffset);
+            out.writeInt(MAGIC);
+        }
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return open(target);
+    }
+
+    /**
+     * Maps an existing segment and loads its block table and indexes
+     */
+    public static ArchiveSegment open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int size = buffer.capacity();
+        if (size < 2 * Integer.BYTES + TRAILER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(size - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not an archive segment: " + path);
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported archive segment version in " + path);
+        }
+
+        int tableOffset = (int) buffer.getLong(size - TRAILER_SIZE);
+        byte[] metadata = new byte[size - TRAILER_SIZE - tableOffset];
+        buffer.get(tableOffset, metadata);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(metadata));
+
+        Block[] blocks = new Block[in.readInt()];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new Block(in.readLong(), in.readInt(), in.readInt(), in.readInt(), readCursor(in), readCursor(in));
+        }
+        return new ArchiveSegment(path, buffer, blocks, readIndex(in), readIndex(in));
+    }
+
+    /**
+     * Messages sent or received by the plate beyond the cursor, nearest first
+     * @param older true for messages before the cursor, false for messages after it
+     */
+    public List<Message> findByPlate(String plateNumber, MessageCursor cursor, boolean older, int limit) {
+        return find(plateIndex.get(plateNumber),
+            message -> plateNumber.equals(message.getFromPlateNumber()) || plateNumber.equals(message.getToPlateNumber()),
+            cursor, older, limit);
+    }
+
+    /**
+     * Messages in the conversation beyond the cursor, nearest first
+     */
+    public List<Message> findByConversation(String conversationKey, MessageCursor cursor, boolean older, int limit) {
+        return find(conversationIndex.get(conversationKey),
+            message -> conversationKey.equals(message.getConversationKey()),
+            cursor, older, limit);
+    }
+
+    /**
+     * Every message in the segment, in order
+     */
+    public List<Message> readAll() {
+        List<Message> messages = new ArrayList<>(messageCount);
+        for (Block block : blocks) {
+            messages.addAll(readBlock(block));
+        }
+        return messages;
+    }
+
+    public MessageCursor getFirst() {
+        return blocks[0].first;
+    }
+
+    public MessageCursor getLast() {
+        return blocks[blocks.length - 1].last;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public long getSizeBytes() {
+        return buffer.capacity();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private List<Message> find(int[] candidates, Predicate<Message> match, MessageCursor cursor, boolean older, int limit) {
+        List<Message> found = new ArrayList<>();
+        if (candidates == null) {
+            return found;
+        }
+        for (int k = 0; k < candidates.length && found.size() < limit; k++) {
+            Block block = blocks[candidates[older ? candidates.length - 1 - k : k]];
+            // Skip blocks wholly on the wrong side of the cursor without inflating them
+            if (older ? block.first.compareTo(cursor) >= 0 : block.last.compareTo(cursor) <= 0) {
+                continue;
+            }
+            List<Message> records = readBlock(block);
+            for (int i = 0; i < records.size() && found.size() < limit; i++) {
+                Message message = records.get(older ? records.size() - 1 - i : i);
+                int position = MessageCursor.of(message).compareTo(cursor);
+                if ((older ? position < 0 : position > 0) && match.test(message)) {
+                    found.add(message);
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<Message> readBlock(Block block) {
+        ByteBuffer compressed = buffer.slice((int) block.offset, block.compressedLength);
+        byte[] raw = new byte[block.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt block in archive segment " + path, e);
+        } finally {
+            inflater.end();
+        }
+
+        List<Message> messages = new ArrayList<>(block.count);
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+            for (int i = 0; i < block.count; i++) {
+                messages.add(readMessage(in));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt block in archive segment " + path, e);
+        }
+        return messages;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeMessage(DataOutputStream out, Message message) throws IOException {
+        out.writeLong(message.getId());
+        writeTime(out, message.getTimestamp());
+        out.writeUTF(message.getFromPlateNumber());
+        out.writeUTF(message.getToPlateNumber());
+        out.writeUTF(message.getConversationKey());
+        // Content may exceed writeUTF's 64 KB limit
+        byte[] content = message.getMessageContent().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(content.length);
+        out.write(content);
+        writeNullable(out, message.getMessageType());
+        out.writeBoolean(Boolean.TRUE.equals(message.getIsDelivered()));
+        out.writeBoolean(Boolean.TRUE.equals(message.getIsRead()));
+        writeNullableTime(out, message.getDeliveredAt());
+        writeNullableTime(out, message.getReadAt());
+        writeNullable(out, message.getXmppMessageId());
+    }
+
+    private static Message readMessage(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        LocalDateTime timestamp = readTime(in);
+        String from = in.readUTF();
+        String to = in.readUTF();
+        String conversationKey = in.readUTF();
+        byte[] content = new byte[in.readInt()];
+        in.readFully(content);
+        return Message.builder()
+                .id(id)
+                .timestamp(timestamp)
+                .fromPlateNumber(from)
+                .toPlateNumber(to)
+                .conversationKey(conversationKey)
+                .messageContent(new String(content, StandardCharsets.UTF_8))
+                .messageType(readNullable(in))
+                .isDelivered(in.readBoolean())
+                .isRead(in.readBoolean())
+                .deliveredAt(readNullableTime(in))
+                .readAt(readNullableTime(in))
+                .xmppMessageId(readNullable(in))
+                .build();
+    }
+
+    private static void writeIndex(DataOutputStream out, Map<String, TreeSet<Integer>> index) throws IOException {
+        out.writeInt(index.size());
+        for (Map.Entry<String, TreeSet<Integer>> entry : index.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (int block : entry.getValue()) {
+                out.writeInt(block);
+            }
+        }
+    }
+
+    private static Map<String, int[]> readIndex(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, int[]> index = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            int[] blockNumbers = new int[in.readInt()];
+            for (int j = 0; j < blockNumbers.length; j++) {
+                blockNumbers[j] = in.readInt();
+            }
+            index.put(key, blockNumbers);
+        }
+        return index;
+    }
+
+    private static void writeCursor(DataOutputStream out, MessageCursor cursor) throws IOException {
+        writeTime(out, cursor.getTimestamp());
+        out.writeLong(cursor.getId());
+    }
+
+    private static MessageCursor readCursor(DataInputStream in) throws IOException {
+        LocalDateTime timestamp = readTime(in);
+        return MessageCursor.of(timestamp, in.readLong());
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeNullableTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeBoolean(time != null);
+        if (time != null) {
+            writeTime(out, time);
+        }
+    }
+
+    private static LocalDateTime readNullableTime(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readTime(in) : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static final class Block {
+        final long offset;
+        final int compressedLength;
+        final int rawLength;
+        final int count;
+        final MessageCursor first;
+        final MessageCursor last;
+
+        Block(long offset, int compressedLength, int rawLength, int count, MessageCursor first, MessageCursor last) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+            this.count = count;
+            this.first = first;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.xmpp.plate.util;
+
+import com.xmpp.plate.dto.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Small in-process cache with a size bound (LRU) and a time-to-live per entry
+ * Loads run outside the lock, so a slow loader never blocks readers of other keys.
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final BiConsumer<K, V> removalListener;
+
+    // Access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BoundedTtlCache(String name, int maxSize, long ttlMillis) {
+        this(name, maxSize, ttlMillis, (key, value) -> { });
+    }
+
+    /**
+     * Creates a cache whose removal listener is called for every entry that leaves it
+     * (expiry, eviction, invalidation or replacement), outside the cache lock
+     */
+    public BoundedTtlCache(String name, int maxSize, long ttlMillis, BiConsumer<K, V> removalListener) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMillis = ttlMillis;
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * Returns the cached value, or loads, stores and returns it on a miss
+     * A loader returning null is not cached.
+     */
+    public V get(K key, Function<K, V> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            put(key, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Like get, but returns what reader makes of the value while the value is still cached
+     * For values the removal listener destroys: on a hit the reader runs under the cache lock, on a
+     * miss before the loaded value is stored, so no removal can run concurrently. The reader must be
+     * quick and must not return null.
+     */
+    public <R> R read(K key, Function<K, V> loader, Function<V, R> reader) {
+        R cached = lookup(key, reader);
+        if (cached != null) {
+            return cached;
+        }
+        V loaded = loader.apply(key);
+        if (loaded == null) {
+            return null;
+        }
+        R result = reader.apply(loaded);
+        put(key, loaded);
+        return result;
+    }
+
+    /**
+     * Returns the cached value or null, counting a hit or miss
+     */
+    public V getIfPresent(K key) {
+        return lookup(key, Function.identity());
+    }
+
+    private <R> R lookup(K key, Function<V, R> reader) {
+        Entry<V> expired = null;
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired()) {
+                    hits.incrementAndGet();
+                    return reader.apply(entry.value);
+                }
+                entries.remove(key);
+                expired = entry;
+            }
+        }
+        misses.incrementAndGet();
+        if (expired != null) {
+            removalListener.accept(key, expired.value);
+        }
+        return null;
+    }
+
+    public void put(K key, V value) {
+        List<Map.Entry<K, V>> removed = new ArrayList<>();
+        synchronized (entries) {
+            Entry<V> previous = entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+            if (previous != null && previous.value != value) {
+                removed.add(Map.entry(key, previous.value));
+            }
+            Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxSize && iterator.hasNext()) {
+                Map.Entry<K, Entry<V>> eldest = iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+                removed.add(Map.entry(eldest.getKey(), eldest.getValue().value));
+            }
+        }
+        removed.forEach(entry -> removalListener.accept(entry.getKey(), entry.getValue()));
+    }
+
+    public void invalidate(K key) {
+        Entry<V> removed;
+        synchronized (entries) {
+            removed = entries.remove(key);
+        }
+        if (removed != null) {
+            removalListener.accept(key, removed.value);
+        }
+    }
+
+    public void invalidateAll() {
+        List<Map.Entry<K, Entry<V>>> removed;
+        synchronized (entries) {
+            removed = new ArrayList<>(entries.entrySet());
+            entries.clear();
+        }
+        removed.forEach(entry -> removalListener.accept(entry.getKey(), entry.getValue().value));
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return CacheStats.builder()
+                .name(name)
+                .size(size)
+                .maxSize(maxSize)
+                .hits(hits.get())
+                .misses(misses.get())
+                .evictions(evictions.get())
+                .build();
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
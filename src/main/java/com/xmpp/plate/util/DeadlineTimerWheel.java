@@ -0,0 +1,185 @@
+package com.xmpp.plate.util;
+
+import com.xmpp.plate.dto.TimerStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel holding at most one deadline per key
+ * Touching a key that already has a timer only moves its deadline; nothing is allocated
+ * or scheduled. The wheel visits a key once per bucket pass and re-files it if its deadline
+ * has moved, so cancelled or refreshed timers never pile up in a delay queue.
+ */
+@Slf4j
+public class DeadlineTimerWheel<K> {
+
+    private final String name;
+    private final long tickNanos;
+    private final Set<K>[] buckets;
+    private final Consumer<K> onExpire;
+
+    private final Map<K, Timer> timers = new ConcurrentHashMap<>();
+
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    private final Thread ticker;
+    private final long startNanos;
+    private volatile boolean running = true;
+
+    // Written by the ticker thread; read when filing timers
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public DeadlineTimerWheel(String name, long tickMillis, int wheelSize, Consumer<K> onExpire) {
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.buckets = new Set[Math.max(1, wheelSize)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.onExpire = onExpire;
+        this.startNanos = System.nanoTime();
+        this.ticker = new Thread(this::run, name + "-timer");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * Sets the key's deadline to delay from now, creating the timer if there is none
+     */
+    public void touch(K key, long delayMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        timers.compute(key, (k, timer) -> {
+            if (timer == null) {
+                timer = new Timer(deadline);
+                file(k, deadline);
+            } else {
+                // Still filed under the earlier deadline; re-filed when that bucket comes round
+                timer.deadline = deadline;
+            }
+            return timer;
+        });
+    }
+
+    /**
+     * Starts a timer for the key unless one is already pending; an existing deadline is left alone
+     */
+    public void scheduleIfAbsent(K key, long delayMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        timers.computeIfAbsent(key, k -> {
+            file(k, deadline);
+            return new Timer(deadline);
+        });
+    }
+
+    /**
+     * Removes the key's timer without firing it
+     * @return true if a timer was pending
+     */
+    public boolean cancel(K key) {
+        return timers.remove(key) != null;
+    }
+
+    public TimerStats getStats() {
+        return TimerStats.builder()
+                .name(name)
+                .pending(timers.size())
+                .fired(fired.get())
+                .lastLagMillis(lastLagMillis.get())
+                .maxLagMillis(maxLagMillis.get())
+                .build();
+    }
+
+    /**
+     * Stops the ticker; pending timers are dropped without firing
+     */
+    public void stop() {
+        running = false;
+        ticker.interrupt();
+        timers.clear();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long tickStart = startNanos + (tick + 1) * tickNanos;
+            long sleep = tickStart - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            tick++;
+            currentTick = tick;
+            try {
+                processBucket(tick);
+            } catch (RuntimeException e) {
+                log.error("Timer wheel {} failed to process tick", name, e);
+            }
+        }
+    }
+
+    private void processBucket(long tick) {
+        Set<K> bucket = buckets[(int) (tick % buckets.length)];
+        if (bucket.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        List<K> due = new ArrayList<>();
+        List<Long> deadlines = new ArrayList<>();
+        for (K key : bucket) {
+            bucket.remove(key);
+            timers.computeIfPresent(key, (k, timer) -> {
+                if (timer.deadline <= now) {
+                    due.add(k);
+                    deadlines.add(timer.deadline);
+                    return null;
+                }
+                file(k, timer.deadline);
+                return timer;
+            });
+        }
+
+        for (int i = 0; i < due.size(); i++) {
+            long lag = TimeUnit.NANOSECONDS.toMillis(now - deadlines.get(i));
+            lastLagMillis.set(lag);
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+            fired.incrementAndGet();
+            try {
+                onExpire.accept(due.get(i));
+            } catch (RuntimeException e) {
+                log.error("Timer wheel {} callback failed for {}", name, due.get(i), e);
+            }
+        }
+    }
+
+    /**
+     * Files the key in the bucket of the first tick at or after its deadline, never the one being processed
+     */
+    private void file(K key, long deadline) {
+        long deadlineTick = (deadline - startNanos + tickNanos - 1) / tickNanos;
+        long tick = Math.max(deadlineTick, currentTick + 1);
+        buckets[(int) (tick % buckets.length)].add(key);
+    }
+
+    private static final class Timer {
+        long deadline;
+
+        Timer(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
@@ -1,38 +1,71 @@
 package com.xmpp.plate.util;
 
+import com.xmpp.plate.config.CacheProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * Utility class for encrypting and decrypting sensitive data
  * Uses AES-128 encryption (key is derived from SHA-256 hash but truncated to 128 bits)
+ * The key is derived once and initialized ciphers are pooled, so that reuse does not depend on the calling thread.
  */
 @Component
 @Slf4j
 public class EncryptionUtil {
 
     private static final String ALGORITHM = "AES";
-    
+
+    // Idle ciphers kept per mode; callers beyond this create a cipher and drop it afterwards
+    private static final int CIPHER_POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
     @Value("${encryption.secret.key}")
     private String secretKey;
 
+    @Autowired
+    private CacheProperties cacheProperties;
+
+    private SecretKeySpec secretKeySpec;
+
+    // Ciphers are not thread-safe; each call borrows an initialized one and returns it when done.
+    // A pool rather than a ThreadLocal, since virtual threads are never reused between requests.
+    private final BlockingQueue<Cipher> encryptCiphers = new ArrayBlockingQueue<>(CIPHER_POOL_SIZE);
+    private final BlockingQueue<Cipher> decryptCiphers = new ArrayBlockingQueue<>(CIPHER_POOL_SIZE);
+
+    // Short-lived cache of decrypted values: ciphertext -> plaintext chars, zeroed when evicted
+    private BoundedTtlCache<String, char[]> decryptedCache;
+
+    @PostConstruct
+    public void init() throws Exception {
+        secretKeySpec = deriveKey(secretKey);
+        CacheProperties.Credentials config = cacheProperties.getCredentials();
+        decryptedCache = new BoundedTtlCache<>("credentials", config.getMaxSize(), config.getTtl(),
+                (encryptedText, plain) -> Arrays.fill(plain, '\0'));
+    }
+
     /**
      * Encrypts a plain text string
      */
     public String encrypt(String plainText) {
         try {
-            SecretKeySpec secretKeySpec = getSecretKeySpec();
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
+            Cipher cipher = borrow(encryptCiphers, Cipher.ENCRYPT_MODE);
             byte[] encryptedBytes = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+            encryptCiphers.offer(cipher);
             return Base64.getEncoder().encodeToString(encryptedBytes);
         } catch (Exception e) {
             log.error("Error encrypting data", e);
@@ -45,10 +78,7 @@ public class EncryptionUtil {
      */
     public String decrypt(String encryptedText) {
         try {
-            SecretKeySpec secretKeySpec = getSecretKeySpec();
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedText));
+            byte[] decryptedBytes = decryptBytes(encryptedText);
             return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
             log.error("Error decrypting data", e);
@@ -56,8 +86,68 @@ public class EncryptionUtil {
         }
     }
 
-    private SecretKeySpec getSecretKeySpec() throws Exception {
-        byte[] key = secretKey.getBytes(StandardCharsets.UTF_8);
+    /**
+     * Decrypts a credential, serving repeated lookups from a short-lived cache
+     * Cached plaintext is held as a char array and wiped when it expires or is evicted.
+     */
+    public String decryptCredential(String encryptedText) {
+        // Copied while cached, since the removal listener zeroes the array once it leaves the cache
+        return decryptedCache.read(encryptedText, this::decryptToChars, String::new);
+    }
+
+    private char[] decryptToChars(String encryptedText) {
+        byte[] decryptedBytes = null;
+        try {
+            decryptedBytes = decryptBytes(encryptedText);
+            CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(decryptedBytes));
+            char[] plain = Arrays.copyOf(chars.array(), chars.limit());
+            Arrays.fill(chars.array(), '\0');
+            return plain;
+        } catch (Exception e) {
+            log.error("Error decrypting data", e);
+            throw new RuntimeException("Decryption failed", e);
+        } finally {
+            if (decryptedBytes != null) {
+                Arrays.fill(decryptedBytes, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Wipes all cached plaintext
+     */
+    @PreDestroy
+    public void clearCredentialCache() {
+        decryptedCache.invalidateAll();
+    }
+
+    /**
+     * Decrypts with a pooled cipher; a cipher that failed is dropped rather than returned
+     */
+    private byte[] decryptBytes(String encryptedText) throws GeneralSecurityException {
+        Cipher cipher = borrow(decryptCiphers, Cipher.DECRYPT_MODE);
+        byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedText));
+        decryptCiphers.offer(cipher);
+        return decryptedBytes;
+    }
+
+    private Cipher borrow(BlockingQueue<Cipher> pool, int mode) {
+        Cipher cipher = pool.poll();
+        return cipher != null ? cipher : newCipher(mode);
+    }
+
+    private Cipher newCipher(int mode) {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(mode, secretKeySpec);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM + " cipher", e);
+        }
+    }
+
+    static SecretKeySpec deriveKey(String secret) throws Exception {
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
         MessageDigest sha = MessageDigest.getInstance("SHA-256");
         key = sha.digest(key);
         key = Arrays.copyOf(key, 16); // Use only first 128 bits for AES-128
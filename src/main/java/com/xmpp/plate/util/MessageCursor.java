@@ -0,0 +1,69 @@
+package com.xmpp.plate.util;
+
+import com.xmpp.plate.entity.Message;
+import com.xmpp.plate.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position in message history: the (timestamp, id) of a message
+ * Encoded as an opaque URL-safe token so clients do not depend on its contents.
+ */
+public final class MessageCursor implements Comparable<MessageCursor> {
+
+    // Sorts after every stored message; used when a page starts at the newest message
+    public static final MessageCursor LATEST = new MessageCursor(LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE);
+
+    // Sorts before every stored message
+    public static final MessageCursor EARLIEST = new MessageCursor(LocalDateTime.of(1970, 1, 1, 0, 0), Long.MIN_VALUE);
+
+    private final LocalDateTime timestamp;
+    private final long id;
+
+    private MessageCursor(LocalDateTime timestamp, long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getTimestamp(), message.getId());
+    }
+
+    public static MessageCursor of(LocalDateTime timestamp, long id) {
+        return new MessageCursor(timestamp, id);
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public int compareTo(MessageCursor other) {
+        int byTime = timestamp.compareTo(other.timestamp);
+        return byTime != 0 ? byTime : Long.compare(id, other.id);
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new MessageCursor(
+                LocalDateTime.parse(raw.substring(0, separator)),
+                Long.parseLong(raw.substring(separator + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.xmpp.plate.util;
+
+import com.xmpp.plate.dto.SerialExecutorStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks in submission order per key, and tasks for different keys in parallel
+ * Each key with pending work has its own queue, drained by one task at a time on a shared executor,
+ * so a key whose task blocks only holds up its own later tasks. Queuing never blocks the caller.
+ */
+@Slf4j
+public class SerialExecutor<K> {
+
+    // Tasks one drain runs before handing its thread back, so a busy key cannot keep a pooled thread
+    private static final int DRAIN_BATCH = 16;
+
+    private final String name;
+    private final Executor executor;
+    private final int keyCapacity;
+
+    // A key is present while a drain for it is queued or running
+    private final ConcurrentHashMap<K, Deque<Runnable>> queues = new ConcurrentHashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public SerialExecutor(String name, Executor executor, int keyCapacity) {
+        this.name = name;
+        this.executor = executor;
+        this.keyCapacity = Math.max(1, keyCapacity);
+    }
+
+    /**
+     * Queues a task behind earlier tasks for the same key
+     * @return false if the task was rejected because the key's queue is full or the executor stopped
+     */
+    public boolean execute(K key, Runnable task) {
+        boolean[] outcome = new boolean[2];
+        if (running) {
+            queues.compute(key, (k, queue) -> {
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    outcome[1] = true;
+                }
+                if (queue.size() < keyCapacity) {
+                    queue.add(task);
+                    outcome[0] = true;
+                }
+                return queue;
+            });
+        }
+
+        if (!outcome[0]) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        queued.incrementAndGet();
+        if (outcome[1]) {
+            schedule(key);
+        }
+        return true;
+    }
+
+    public SerialExecutorStats getStats() {
+        return SerialExecutorStats.builder()
+                .name(name)
+                .keyCapacity(keyCapacity)
+                .queued(queued.get())
+                .activeKeys(queues.size())
+                .accepted(accepted.get())
+                .completed(completed.get())
+                .rejected(rejected.get())
+                .failed(failed.get())
+                .build();
+    }
+
+    /**
+     * Stops accepting tasks and waits briefly for what is already queued
+     */
+    public void stop() {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (queued.get() > 0) {
+            log.warn("Serial executor {} stopped with {} tasks unprocessed", name, queued.get());
+        }
+    }
+
+    private void schedule(K key) {
+        try {
+            executor.execute(() -> drain(key));
+        } catch (RejectedExecutionException e) {
+            Deque<Runnable> dropped = queues.remove(key);
+            int count = dropped == null ? 0 : dropped.size();
+            queued.addAndGet(-count);
+            rejected.addAndGet(count);
+            log.warn("Serial executor {} could not schedule {} tasks for {}", name, count, key);
+        }
+    }
+
+    private void drain(K key) {
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            Runnable task = next(key);
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+                completed.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("Serial executor {} task failed", name, e);
+            }
+        }
+        schedule(key);
+    }
+
+    /**
+     * Takes the key's next task, removing the key once its queue is empty
+     */
+    private Runnable next(K key) {
+        Runnable[] next = new Runnable[1];
+        queues.computeIfPresent(key, (k, queue) -> {
+            next[0] = queue.poll();
+            return next[0] == null ? null : queue;
+        });
+        if (next[0] != null) {
+            queued.decrementAndGet();
+        }
+        return next[0];
+    }
+}
@@ -0,0 +1,147 @@
+package com.xmpp.plate.util;
+
+import com.xmpp.plate.dto.CoalescingStats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Decides which state updates per key are worth forwarding
+ * A repeat of the last forwarded state is suppressed until the refresh interval has passed.
+ * A change arriving sooner than the minimum interval after the previous one is held back,
+ * and only the latest held-back state is forwarded once the interval is over.
+ */
+public class StateCoalescer<K> {
+
+    public enum Decision {
+        // Caller should forward the state now
+        FORWARD,
+        // Nothing to do
+        SUPPRESS,
+        // Will be forwarded later through the deferred forwarder, unless superseded
+        DEFER
+    }
+
+    private final String name;
+    private final long refreshNanos;
+    private final long minIntervalNanos;
+    private final BiConsumer<K, String> deferredForwarder;
+    private final DeadlineTimerWheel<K> deferredTimers;
+
+    private final Map<K, Record> records = new ConcurrentHashMap<>();
+
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    public StateCoalescer(String name, long refreshMillis, long minIntervalMillis,
+                          long tickMillis, int wheelSize, BiConsumer<K, String> deferredForwarder) {
+        this.name = name;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+        this.deferredForwarder = deferredForwarder;
+        this.deferredTimers = new DeadlineTimerWheel<>(name + "-deferred", tickMillis, wheelSize, this::releaseDeferred);
+    }
+
+    /**
+     * Whether a state has been forwarded for this key and not yet evicted
+     */
+    public boolean isKnown(K key) {
+        return records.containsKey(key);
+    }
+
+    /**
+     * Records an incoming state and decides what the caller should do with it
+     */
+    public Decision offer(K key, String state) {
+        long now = System.nanoTime();
+        Decision[] decision = new Decision[1];
+        records.compute(key, (k, record) -> {
+            if (record == null) {
+                decision[0] = Decision.FORWARD;
+                return new Record(state, now);
+            }
+            if (record.pendingState != null) {
+                // Already waiting on the rate limit; the newest state replaces the held-back one
+                record.pendingState = state.equals(record.lastState) ? null : state;
+                decision[0] = record.pendingState == null ? Decision.SUPPRESS : Decision.DEFER;
+                return record;
+            }
+            long elapsed = now - record.lastSentNanos;
+            if (state.equals(record.lastState) && elapsed < refreshNanos) {
+                decision[0] = Decision.SUPPRESS;
+            } else if (elapsed < minIntervalNanos) {
+                record.pendingState = state;
+                deferredTimers.scheduleIfAbsent(k, TimeUnit.NANOSECONDS.toMillis(minIntervalNanos - elapsed) + 1);
+                decision[0] = Decision.DEFER;
+            } else {
+                record.lastState = state;
+                record.lastSentNanos = now;
+                decision[0] = Decision.FORWARD;
+            }
+            return record;
+        });
+
+        switch (decision[0]) {
+            case FORWARD -> forwarded.incrementAndGet();
+            case SUPPRESS -> suppressed.incrementAndGet();
+            case DEFER -> deferred.incrementAndGet();
+        }
+        return decision[0];
+    }
+
+    /**
+     * Drops keys with nothing held back that have not forwarded anything for the given time
+     */
+    public void evictIdle(long idleMillis) {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        records.forEach((key, record) -> records.computeIfPresent(key, (k, current) ->
+            current.pendingState == null && current.lastSentNanos - cutoff < 0 ? null : current));
+    }
+
+    public CoalescingStats getStats() {
+        return CoalescingStats.builder()
+                .name(name)
+                .tracked(records.size())
+                .forwarded(forwarded.get())
+                .suppressed(suppressed.get())
+                .deferred(deferred.get())
+                .build();
+    }
+
+    public void stop() {
+        deferredTimers.stop();
+    }
+
+    private void releaseDeferred(K key) {
+        String[] release = new String[1];
+        records.computeIfPresent(key, (k, record) -> {
+            if (record.pendingState != null) {
+                release[0] = record.pendingState;
+                record.lastState = record.pendingState;
+                record.lastSentNanos = System.nanoTime();
+                record.pendingState = null;
+            }
+            return record;
+        });
+        if (release[0] != null) {
+            forwarded.incrementAndGet();
+            deferredForwarder.accept(key, release[0]);
+        }
+    }
+
+    private static final class Record {
+        String lastState;
+        long lastSentNanos;
+        // Latest change held back by the rate limit, if any
+        String pendingState;
+
+        Record(String lastState, long lastSentNanos) {
+            this.lastState = lastState;
+            this.lastSentNanos = lastSentNanos;
+        }
+    }
+}